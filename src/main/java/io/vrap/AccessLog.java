@@ -0,0 +1,189 @@
+package io.vrap;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.google.common.base.Charsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.handling.Context;
+import ratpack.handling.Handler;
+import ratpack.handling.RequestOutcome;
+import ratpack.http.Request;
+import ratpack.service.Service;
+import ratpack.service.StopEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logs the requests of the server in the NCSA common log format or as json lines.
+ *
+ * Failed and slow requests are always logged, all others are sampled. The request threads only put the
+ * outcome into a lock-free ring buffer, the lines are formatted into a reused buffer by a single writer thread.
+ * Lines written to a file are written in batches, lines written to the log are logged as one event per request.
+ */
+class AccessLog implements Handler, Service {
+    private final static Logger LOG = LoggerFactory.getLogger(AccessLog.class);
+    private final static DateTimeFormatter NCSA_DATE = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneId.systemDefault());
+
+    private final static int CAPACITY = 16384;
+    private final static int BATCH_SIZE = 1024;
+    private final static int LINE_SIZE = 256;
+
+    private final int sampleRate;
+    private final long slowNanos;
+    private final boolean json;
+    private final Path file;
+
+    private final RingBuffer<Entry> ring = new RingBuffer<>(CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final StringBuilder batch = new StringBuilder(BATCH_SIZE * LINE_SIZE);
+    private volatile boolean running = true;
+    private final Thread writer;
+    private OutputStream out;
+
+    /**
+     * @param sampleRate log one in this number of successful requests
+     * @param slowMillis always log requests taking at least this number of milliseconds
+     * @param json       log json lines instead of the NCSA common log format
+     * @param file       the file to write to or null to write to the log
+     */
+    public AccessLog(final int sampleRate, final long slowMillis, final boolean json, final Path file) throws IOException {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.json = json;
+        this.file = file;
+        if (file != null) {
+            out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        writer = new Thread(this::write, "vrap-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void handle(final Context ctx) throws Exception {
+        final long startNanos = System.nanoTime();
+        ctx.onClose(outcome -> record(outcome, System.nanoTime() - startNanos));
+        ctx.next();
+    }
+
+    void record(final RequestOutcome outcome, final long durationNanos) {
+        final int status = outcome.getResponse().getStatus().getCode();
+        if (status < 400 && durationNanos < slowNanos && sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        final Request request = outcome.getRequest();
+        offer(new Entry(request.getRemoteAddress().getHost(), outcome.getSentAt(), request.getMethod().getName(), request.getRawUri(),
+                request.getProtocol(), status, outcome.getResponse().getHeaders().get("Content-Length"), durationNanos));
+    }
+
+    void offer(final Entry entry) {
+        if (!ring.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void write() {
+        while (running || !ring.isEmpty()) {
+            final int entries = ring.drain(BATCH_SIZE, this::append);
+            if (batch.length() > 0) {
+                flush();
+            }
+            if (entries == 0) {
+                if (dropped.sum() > 0) {
+                    LOG.warn("Dropped {} access log entries", dropped.sumThenReset());
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOG.error("Could not close {}", file, e);
+            }
+        }
+    }
+
+    private void append(final Entry entry) {
+        format(entry);
+        if (out != null) {
+            batch.append('\n');
+        } else {
+            LOG.info(batch.toString());
+            batch.setLength(0);
+        }
+    }
+
+    private void format(final Entry entry) {
+        if (json) {
+            final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+            batch.append("{\"timestamp\":\"").append(entry.sentAt)
+                    .append("\",\"remoteHost\":\"").append(encoder.quoteAsString(entry.remoteHost))
+                    .append("\",\"method\":\"").append(entry.method)
+                    .append("\",\"uri\":\"").append(encoder.quoteAsString(entry.uri))
+                    .append("\",\"protocol\":\"").append(entry.protocol)
+                    .append("\",\"status\":").append(entry.status)
+                    .append(",\"bytes\":").append(entry.contentLength != null ? entry.contentLength : "null")
+                    .append(",\"durationMs\":").append(entry.durationNanos / 1000 / 1000.0)
+                    .append('}');
+        } else {
+            batch.append(entry.remoteHost).append(" - - [");
+            NCSA_DATE.formatTo(entry.sentAt, batch);
+            batch.append("] \"").append(entry.method).append(' ').append(entry.uri).append(' ').append(entry.protocol)
+                    .append("\" ").append(entry.status).append(' ').append(entry.contentLength != null ? entry.contentLength : "-")
+                    .append(' ').append(TimeUnit.NANOSECONDS.toMillis(entry.durationNanos)).append("ms");
+        }
+    }
+
+    private void flush() {
+        try {
+            out.write(batch.toString().getBytes(Charsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            LOG.error("Could not write access log to {}", file, e);
+        } finally {
+            batch.setLength(0);
+        }
+    }
+
+    @Override
+    public void onStop(final StopEvent event) throws Exception {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    static class Entry {
+        private final String remoteHost;
+        private final Instant sentAt;
+        private final String method;
+        private final String uri;
+        private final String protocol;
+        private final int status;
+        private final String contentLength;
+        private final long durationNanos;
+
+        Entry(final String remoteHost, final Instant sentAt, final String method, final String uri, final String protocol,
+              final int status, final String contentLength, final long durationNanos) {
+            this.remoteHost = remoteHost;
+            this.sentAt = sentAt;
+            this.method = method;
+            this.uri = uri;
+            this.protocol = protocol;
+            this.status = status;
+            this.contentLength = contentLength;
+            this.durationNanos = durationNanos;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package io.vrap;
+
+import ratpack.handling.Handler;
+import ratpack.handling.Handlers;
+import ratpack.registry.Registry;
+import ratpack.registry.RegistrySpec;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static io.vrap.VrapApp.PARSER_RAML;
+import static io.vrap.VrapApp.PARSER_RMF;
+import static io.vrap.VrapApp.timed;
+
+/**
+ * Holds the models loaded from a raml file together with the routes built from them.
+ *
+ * Instances are immutable, a reload creates a new instance.
+ */
+class ApiModels {
+    private final List<Path> files;
+    private final RamlModelRepository ramlRepo;
+    private final RmfModelRepository rmfRepo;
+    private final Handler ramlRoutes;
+    private final Handler rmfRoutes;
+    private final Handler authRoutes;
+    private final Validator validator = new Validator();
+    private final RmfValidator rmfValidator = new RmfValidator();
+    private final RenderedFileCache renderedFiles = new RenderedFileCache();
+    private final BaseUriReplacer baseUriReplacer;
+    private final SpecArchive specArchive;
+    private final VrapExtension ramlExtension;
+    private final VrapExtension rmfExtension;
+    private final Registry registry;
+
+    private ApiModels(final Path filePath, final List<Path> files, final RamlModelRepository ramlRepo, final RmfModelRepository rmfRepo) throws Exception {
+        this.files = files;
+        this.ramlRepo = ramlRepo;
+        this.rmfRepo = rmfRepo;
+        this.ramlRoutes = ramlRepo != null ? timed("raml routes", () -> new RamlRouter(ramlRepo.getApi()).getRoutes()) : Handlers.next();
+        this.rmfRoutes = rmfRepo != null ? timed("rmf routes", () -> new RmfRouter(rmfRepo.getApi()).getRoutes()) : Handlers.next();
+        this.authRoutes = rmfRepo != null ? new AuthRouter(rmfRepo.getApi()).getRoutes() : Handlers.next();
+        this.baseUriReplacer = ramlRepo != null && ramlRepo.getApi() != null ? BaseUriReplacer.of(ramlRepo.getApi()) :
+                rmfRepo != null && rmfRepo.getApi() != null ? BaseUriReplacer.of(rmfRepo.getApi()) : null;
+        this.specArchive = new SpecArchive(filePath, files);
+        this.ramlExtension = ramlRepo != null && ramlRepo.getApi() != null ? VrapExtension.of(filePath, ramlRepo.getApi()) : null;
+        this.rmfExtension = rmfRepo != null && rmfRepo.getApi() != null ? VrapExtension.of(filePath, rmfRepo.getApi()) : null;
+        this.registry = Registry.of(this::register);
+    }
+
+    private void register(final RegistrySpec registrySpec) {
+        registrySpec.add(validator).add(rmfValidator).add(renderedFiles).add(specArchive);
+        if (ramlRepo != null) {
+            registrySpec.add(ramlRepo);
+        }
+        if (baseUriReplacer != null) {
+            registrySpec.add(baseUriReplacer);
+        }
+        if (rmfRepo != null) {
+            registrySpec.add(rmfRepo);
+        }
+    }
+
+    /**
+     * Returns the raml file and all of its includes.
+     *
+     * @return the files the models were loaded from
+     */
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    @Nullable
+    public RamlModelRepository getRamlRepo() {
+        return ramlRepo;
+    }
+
+    @Nullable
+    public RmfModelRepository getRmfRepo() {
+        return rmfRepo;
+    }
+
+    public Handler getRamlRoutes() {
+        return ramlRoutes;
+    }
+
+    public Handler getRmfRoutes() {
+        return rmfRoutes;
+    }
+
+    public Handler getAuthRoutes() {
+        return authRoutes;
+    }
+
+    @Nullable
+    public VrapExtension getRamlExtension() {
+        return ramlExtension;
+    }
+
+    @Nullable
+    public VrapExtension getRmfExtension() {
+        return rmfExtension;
+    }
+
+    public Validator getValidator() {
+        return validator;
+    }
+
+    public RmfValidator getRmfValidator() {
+        return rmfValidator;
+    }
+
+    /**
+     * Returns a registry with the loaded model repositories, their validators, the cache of rendered files and the spec archive.
+     *
+     * @return the registry
+     */
+    public Registry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns why these models shouldn't replace the current models: an enabled parser produced no api or
+     * reported more errors than for the current models. Errors the current models already have don't prevent a reload.
+     *
+     * @param options the vrap options
+     * @param current the current models
+     * @return the problems, empty iff. the models may replace the current models
+     */
+    public List<String> getReloadProblems(final VrapApp.VrapOptions options, final ApiModels current) {
+        final List<String> problems = new ArrayList<>();
+        if (options.isParserEnabled(PARSER_RAML)) {
+            if (ramlRepo == null || ramlRepo.getApi() == null) {
+                problems.add("raml parser produced no api");
+            } else {
+                final int currentErrors = current.ramlRepo != null ? current.ramlRepo.getErrorCount() : 0;
+                if (ramlRepo.getErrorCount() > currentErrors) {
+                    problems.add("raml parser reported " + ramlRepo.getErrorCount() + " errors, up from " + currentErrors);
+                }
+            }
+        }
+        if (options.isParserEnabled(PARSER_RMF)) {
+            if (rmfRepo == null || rmfRepo.getApi() == null) {
+                problems.add("rmf parser produced no api");
+            } else {
+                final int currentErrors = current.rmfRepo != null ? current.rmfRepo.getErrorCount() : 0;
+                if (rmfRepo.getErrorCount() > currentErrors) {
+                    problems.add("rmf parser reported " + rmfRepo.getErrorCount() + " errors, up from " + currentErrors);
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Loads the models of all enabled parsers concurrently and builds their routes.
+     *
+     * @param options  the vrap options
+     * @param filePath the raml file
+     * @param files    the raml file and all of its includes
+     * @return the loaded models
+     */
+    public static ApiModels load(final VrapApp.VrapOptions options, final Path filePath, final List<Path> files) throws Exception {
+        final ExecutorService modelLoader = Executors.newFixedThreadPool(2);
+        final Future<RamlModelRepository> ramlRepoFuture = options.isParserEnabled(PARSER_RAML) ?
+                modelLoader.submit(() -> timed("raml model", () -> RamlModelRepository.of(filePath))) :
+                CompletableFuture.completedFuture(null);
+        final Future<RmfModelRepository> rmfRepoFuture = options.isParserEnabled(PARSER_RMF) ?
+                modelLoader.submit(() -> timed("rmf model", () -> options.getSnapshotFile().isPresent() ?
+                        RmfModelRepository.of(filePath, new RmfModelSnapshot(options.getSnapshotFile().get(), filePath, files)) :
+                        RmfModelRepository.of(filePath))) :
+                CompletableFuture.completedFuture(null);
+        modelLoader.shutdown();
+
+        return new ApiModels(filePath, files, await(ramlRepoFuture), await(rmfRepoFuture));
+    }
+
+    private static <T> T await(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.vrap;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.vrap.rmf.raml.model.modules.Api;
 import io.vrap.rmf.raml.model.security.OAuth20Settings;
 import io.vrap.rmf.raml.model.security.SecurityScheme;
@@ -11,15 +12,17 @@ import ratpack.form.Form;
 import ratpack.handling.Context;
 import ratpack.handling.Handler;
 import ratpack.handling.Handlers;
-import ratpack.handling.RequestLogger;
 import ratpack.http.Request;
+import ratpack.http.TypedData;
 import ratpack.http.client.HttpClient;
+import ratpack.http.client.RequestSpec;
 import ratpack.registry.Registry;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 
@@ -47,7 +50,7 @@ public class AuthRouter {
         for (final SecurityScheme scheme : schemes) {
             routes.add(Handlers.prefix(
                     scheme.getType().getName(),
-                    new Route(((OAuth20Settings) scheme.getSettings()).getAccessTokenUri())
+                    new Route(scheme.getName(), (OAuth20Settings) scheme.getSettings())
             ));
         }
 
@@ -59,13 +62,15 @@ public class AuthRouter {
 
         private final AuthRouter.RequestProxyHandler requestProxyHandler;
 
+        private final String schemeName;
         private final Handler delegate;
 
-        public Route(final String authUri) {
-            requestProxyHandler = new AuthRouter.RequestProxyHandler(authUri);
+        public Route(final String schemeName, final OAuth20Settings settings) {
+            this.schemeName = schemeName;
+            final String authUri = settings.getAccessTokenUri();
+            requestProxyHandler = new AuthRouter.RequestProxyHandler(schemeName, authUri, new ArrayList<>(settings.getScopes()));
             final Registry registry = Registry.builder().add(authUri).build();
             final Handler chain = Handlers.chain(
-                    RequestLogger.ncsa(LOG),
                     requestProxyHandler
             );
             this.delegate = Handlers.register(registry, chain);
@@ -76,19 +81,33 @@ public class AuthRouter {
             final String path = ctx.getRequest().getPath();
             LOG.debug("Request path: {}", path);
 
-            delegate.handle(ctx);
+            ServerTiming.routeMatched(ctx);
+            Tracing.routeMatched(ctx, schemeName);
+            final Optional<Metrics> metrics = ctx.maybeGet(Metrics.class);
+            if (metrics.isPresent()) {
+                final String mode = ctx.maybeGet(TokenIssuer.class).isPresent() ? "issuer" : VrapMode.proxy.name();
+                final Metrics.Timer timer = metrics.get().start(ctx, schemeName, ctx.getRequest().getMethod().getName(), mode);
+                ctx.insert(Registry.single(Metrics.Timer.class, timer), delegate);
+            } else {
+                delegate.handle(ctx);
+            }
         }
     }
 
     /**
      * This handler proxies the request {@link Context#getRequest()} to the base uri and passes
      * the response and the proxied uri to the next handler.
+     * If a {@link TokenIssuer} is registered the token is issued by it instead.
      */
     private static class RequestProxyHandler implements Handler {
+        private final String schemeName;
         private final String authUri;
+        private final List<String> scopes;
 
-        public RequestProxyHandler(final String authUri) {
+        public RequestProxyHandler(final String schemeName, final String authUri, final List<String> scopes) {
+            this.schemeName = schemeName;
             this.authUri = authUri;
+            this.scopes = scopes;
         }
 
         @Override
@@ -96,24 +115,57 @@ public class AuthRouter {
             final Request request = ctx.getRequest();
             final HttpClient httpClient = ctx.get(HttpClient.class);
             final URI proxiedUri = URI.create(authUri);
+            final Optional<TokenIssuer> tokenIssuer = ctx.maybeGet(TokenIssuer.class);
+            if (tokenIssuer.isPresent()) {
+                ctx.parse(Form.class).then(form -> tokenIssuer.get().issue(ctx, form, schemeName, scopes));
+                return;
+            }
             LOG.info("Forward to: {}", proxiedUri);
 
-            ctx.parse(Form.class).then(form -> {
-                httpClient.requestStream(proxiedUri, requestSpec -> {
-                    final String s = form.entrySet().stream().map(entry -> entry.getKey() + "=" + entry.getValue()).collect(Collectors.joining("&"));
-                    requestSpec.getBody().bytes(s.getBytes(Charsets.UTF_8));
-                    requestSpec.getHeaders().copy(request.getHeaders());
-                    requestSpec.method(request.getMethod());
-
-                    if (form.containsKey("client_id") && form.containsKey("client_secret")) {
-                        final String auth = Base64.getEncoder().encodeToString((form.get("client_id") + ":" + form.get("client_secret")).getBytes(Charsets.UTF_8));
-                        requestSpec.getHeaders().add("Authorization", "Basic " + auth);
-                    }
-                }).then(receivedResponse ->
-                        receivedResponse.forwardTo(ctx.getResponse(), mutableHeaders -> {
-                            mutableHeaders.add("Via", "Vrap OAuth 2.0 proxy");
-                        }));
+            request.getBody().then(body -> {
+                final Optional<TokenCache> tokenCache = ctx.maybeGet(TokenCache.class);
+                final Optional<TokenCache.Key> key = tokenCache.isPresent() ? TokenCache.key(authUri, body.getBuffer(), request.getHeaders()) : Optional.empty();
+                final long start = System.nanoTime();
+                if (key.isPresent()) {
+                    tokenCache.get().get(key.get(), () -> httpClient.request(proxiedUri, requestSpec -> proxyRequest(ctx, body, requestSpec))
+                            .wiretap(result -> Metrics.phase(ctx, Metrics.UPSTREAM, start))
+                            .map(receivedResponse -> new TokenCache.TokenResponse(
+                                    receivedResponse.getStatusCode(),
+                                    receivedResponse.getHeaders().get(HttpHeaderNames.CONTENT_TYPE),
+                                    receivedResponse.getBody().getBytes())))
+                            .then(tokenResponse -> tokenResponse.send(ctx));
+                    return;
+                }
+                httpClient.requestStream(proxiedUri, requestSpec -> proxyRequest(ctx, body, requestSpec)).then(receivedResponse -> {
+                    Metrics.phase(ctx, Metrics.UPSTREAM, start);
+                    final long forwardStart = System.nanoTime();
+                    ctx.onClose(outcome -> Metrics.phase(ctx, Metrics.FORWARD, forwardStart));
+                    receivedResponse.forwardTo(ctx.getResponse(), mutableHeaders -> {
+                        mutableHeaders.add("Via", "Vrap OAuth 2.0 proxy");
+                    });
+                });
             });
         }
+
+        /**
+         * Forwards the form body as is. The client credentials are only read from the form
+         * if the request has no authorization header, to send them as basic authorization.
+         */
+        private static void proxyRequest(final Context ctx, final TypedData body, final RequestSpec requestSpec) {
+            final Request request = ctx.getRequest();
+            requestSpec.getBody().buffer(body.getBuffer());
+            requestSpec.getHeaders().copy(request.getHeaders());
+            requestSpec.method(request.getMethod());
+            Tracing.propagate(ctx, requestSpec.getHeaders());
+
+            if (!request.getHeaders().contains(HttpHeaderNames.AUTHORIZATION)) {
+                final String clientId = FormScanner.value(body.getBuffer(), "client_id");
+                final String clientSecret = clientId != null ? FormScanner.value(body.getBuffer(), "client_secret") : null;
+                if (clientSecret != null) {
+                    final String auth = Base64.getEncoder().encodeToString((clientId + ":" + clientSecret).getBytes(Charsets.UTF_8));
+                    requestSpec.getHeaders().add(HttpHeaderNames.AUTHORIZATION, "Basic " + auth);
+                }
+            }
+        }
     }
 }
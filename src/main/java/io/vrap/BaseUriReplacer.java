@@ -1,42 +1,132 @@
 package io.vrap;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import io.vrap.rmf.raml.model.security.OAuth20Settings;
 import org.raml.v2.api.model.v10.api.Api;
 import org.raml.v2.api.model.v10.security.SecurityScheme;
 import ratpack.handling.Context;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Resolves the inline tags of a raml file by inlining their content.
+ * Replaces the base uri and the access token uris of the OAuth 2.0 security schemes of an api
+ * in its json files with the uris of the local proxy.
+ *
+ * The replacement rules are computed once for each api path. The uris are taken from the raml-parser-2 or the RMF model,
+ * whichever is loaded.
  */
 class BaseUriReplacer {
-    public StringWriter preprocess(Context ctx, final Path filePath, final Api api, final String apiPath) throws IOException {
-        final Integer port = ctx.getServerConfig().getPort();
-        final StringWriter stringWriter = new StringWriter();
-        final String baseUri = api.baseUri().value();
-        final List<SecurityScheme> oauthSchemes = api.securitySchemes().stream().filter(securityScheme -> securityScheme.type().equals("OAuth 2.0")).collect(Collectors.toList());
-        String content = new String(Files.readAllBytes(filePath), Charsets.UTF_8);
-
-        ObjectMapper mapper = new ObjectMapper(); // can reuse, share globally
-        final JsonNode file = mapper.readValue(filePath.toFile(), JsonNode.class);
-        if (file.has("baseUri")) {
-            content = content.replaceAll(baseUri, "http://localhost:" + port.toString() + "/" + apiPath);
+    private final static JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String baseUri;
+    private final Map<String, String> tokenUris;
+    private final ConcurrentMap<String, Rules> rules = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseUri   the base uri of the api
+     * @param tokenUris the names of the OAuth 2.0 security schemes by their access token uri
+     */
+    private BaseUriReplacer(final String baseUri, final Map<String, String> tokenUris) {
+        this.baseUri = baseUri;
+        this.tokenUris = tokenUris;
+    }
+
+    public static BaseUriReplacer of(final Api api) {
+        final Map<String, String> tokenUris = new LinkedHashMap<>();
+        for (final SecurityScheme scheme : api.securitySchemes()) {
+            if (scheme.type().equals("OAuth 2.0")) {
+                tokenUris.put(scheme.settings().accessTokenUri().value(), scheme.name());
+            }
+        }
+        return new BaseUriReplacer(api.baseUri().value(), tokenUris);
+    }
+
+    public static BaseUriReplacer of(final io.vrap.rmf.raml.model.modules.Api api) {
+        final Map<String, String> tokenUris = new LinkedHashMap<>();
+        for (final io.vrap.rmf.raml.model.security.SecurityScheme scheme : api.getSecuritySchemes()) {
+            if (scheme.getType().getName().equals("OAuth 2.0")) {
+                tokenUris.put(((OAuth20Settings) scheme.getSettings()).getAccessTokenUri(), scheme.getName());
+            }
+        }
+        return new BaseUriReplacer(api.getBaseUri().getTemplate(), tokenUris);
+    }
+
+    /**
+     * Streams the given json file with the uris replaced to the given writer, which is closed afterwards.
+     *
+     * @param ctx      the request context
+     * @param filePath the json file
+     * @param apiPath  the path the api is served at
+     * @param out      the writer for the replaced content
+     */
+    public void preprocess(final Context ctx, final Path filePath, final String apiPath, final Writer out) throws IOException {
+        try (final Reader content = Files.newBufferedReader(filePath, Charsets.UTF_8)) {
+            try (final Writer writer = transformer(ctx, filePath, apiPath).wrap(out)) {
+                CharStreams.copy(content, writer);
+            }
         }
+    }
 
-        if (!oauthSchemes.isEmpty()) {
-            for (SecurityScheme scheme : oauthSchemes) {
-                content = content.replaceAll(scheme.settings().accessTokenUri().value(), "http://localhost:" + port.toString() + "/auth/" + scheme.name());
+    /**
+     * Returns the replacement for the given json file, the base uri is only replaced in files with a top level base uri property.
+     *
+     * @param ctx      the request context
+     * @param filePath the json file
+     * @param apiPath  the path the api is served at
+     * @return the transformation replacing the uris
+     */
+    public ContentTransformer transformer(final Context ctx, final Path filePath, final String apiPath) throws IOException {
+        final Rules apiRules = rules.computeIfAbsent(apiPath, path -> new Rules(ctx, path));
+        return hasBaseUri(filePath) ? apiRules.withBaseUri : apiRules.withoutBaseUri;
+    }
+
+    /**
+     * Returns true iff. the given json file has a top level base uri property.
+     * The file is read with a streaming parser, which stops at the base uri property.
+     */
+    private static boolean hasBaseUri(final Path filePath) throws IOException {
+        try (final InputStream in = Files.newInputStream(filePath); final JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                if ("baseUri".equals(parser.getCurrentName())) {
+                    return true;
+                }
+                parser.nextToken();
+                parser.skipChildren();
             }
+            return false;
         }
+    }
+
+    private class Rules {
+        private final LiteralReplacer withBaseUri;
+        private final LiteralReplacer withoutBaseUri;
+
+        Rules(final Context ctx, final String apiPath) {
+            final String localUri = "http://localhost:" + ctx.getServerConfig().getPort() + "/" + ctx.get(VrapApp.VrapOptions.class).getMountPath();
 
-        return stringWriter.append(content);
+            final Map<String, String> localTokenUris = new LinkedHashMap<>();
+            tokenUris.forEach((tokenUri, schemeName) -> localTokenUris.put(tokenUri, localUri + "auth/" + schemeName));
+            final Map<String, String> baseUris = new LinkedHashMap<>(localTokenUris);
+            baseUris.put(baseUri, localUri + apiPath);
+
+            this.withBaseUri = new LiteralReplacer(baseUris);
+            this.withoutBaseUri = new LiteralReplacer(localTokenUris);
+        }
     }
 }
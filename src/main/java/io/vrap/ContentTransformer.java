@@ -0,0 +1,18 @@
+package io.vrap;
+
+import java.io.Writer;
+
+/**
+ * A streaming transformation of text content.
+ */
+interface ContentTransformer {
+
+    /**
+     * Returns a writer which writes the transformed content to the given writer.
+     * Closing the returned writer writes any buffered content and closes the given writer.
+     *
+     * @param out the writer for the transformed content
+     * @return the writer for the content to transform
+     */
+    Writer wrap(Writer out);
+}
@@ -1,24 +1,57 @@
 package io.vrap;
 
+import com.google.common.io.CharStreams;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
-import java.util.stream.Stream;
 
 /**
  * This class applies content modifiers to a file with the given path.
+ *
+ * The modifiers are chained as streaming transformations, so the content is passed once through all of them
+ * without materializing intermediate copies.
  */
-class FileContentModifier implements Function<String, String> {
+class FileContentModifier implements Function<String, String>, ContentTransformer {
     private final String path;
-    private final Function<String, String> contentModifier;
+    private final List<ContentTransformer> contentModifiers;
 
     /**
      * @param path the path
-     * @param contentModifiers the content modifiers
+     * @param contentModifiers the content modifiers, the last one is applied first
      */
-    @SafeVarargs
-    public FileContentModifier(final String path, final Function<String, String>... contentModifiers) {
+    public FileContentModifier(final String path, final ContentTransformer... contentModifiers) {
         this.path = path;
-        this.contentModifier = Stream.of(contentModifiers).reduce(Function.identity(), Function::compose);
+        this.contentModifiers = Arrays.asList(contentModifiers);
+    }
+
+    /**
+     * Applies the content modifiers while copying the given content to the given writer.
+     * The writer is closed afterwards.
+     *
+     * @param content the content to modify
+     * @param out the writer for the modified content
+     */
+    public void apply(final Reader content, final Writer out) throws IOException {
+        try (final Writer modifyingWriter = wrap(out)) {
+            CharStreams.copy(content, modifyingWriter);
+        }
+    }
+
+    @Override
+    public Writer wrap(final Writer out) {
+        Writer writer = out;
+        for (final ContentTransformer contentModifier : contentModifiers) {
+            writer = contentModifier.wrap(writer);
+        }
+        return writer;
     }
 
     /**
@@ -30,7 +63,22 @@ class FileContentModifier implements Function<String, String> {
      */
     @Override
     public String apply(final String content) {
-        return contentModifier.apply(content);
+        final StringWriter out = new StringWriter(content.length());
+        try {
+            apply(new StringReader(content), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns true iff. this modifier doesn't change the content.
+     *
+     * @return true iff. there are no content modifiers
+     */
+    public boolean isIdentity() {
+        return contentModifiers.isEmpty();
     }
 
     /**
@@ -0,0 +1,179 @@
+package io.vrap;
+
+import com.google.common.base.Splitter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import ratpack.exec.Blocking;
+import ratpack.handling.Context;
+import ratpack.http.Headers;
+import ratpack.http.Response;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends files unmodified from disk.
+ *
+ * Whole files are sent with {@link Response#sendFile(Path)}, which transfers them with a netty file region
+ * (sendfile) unless the connection uses ssl. A single byte range is answered with 206 Partial Content,
+ * multiple ranges are answered with the whole file.
+ * Clients accepting gzip get a gzip variant of textual files, which is compressed once per file version and kept in memory.
+ */
+class FileSender {
+    private final static Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+    private final static ConcurrentMap<Path, GzippedFile> GZIPPED_FILES = new ConcurrentHashMap<>();
+
+    /**
+     * Sends the given file, answering conditional and range requests.
+     *
+     * @param ctx         the request context
+     * @param file        the file to send
+     * @param contentType the content type of the response
+     */
+    public static void send(final Context ctx, final Path file, final String contentType) throws Exception {
+        if (file == null || !Files.isRegularFile(file)) {
+            ctx.clientError(404);
+            return;
+        }
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final long size = attributes.size();
+        final Instant lastModified = attributes.lastModifiedTime().toInstant();
+        final String etag = "\"" + Long.toHexString(lastModified.toEpochMilli()) + "-" + Long.toHexString(size) + "\"";
+
+        final String range = ctx.getRequest().getHeaders().get(HttpHeaderNames.RANGE);
+        final boolean compressible = Gzip.isCompressible(contentType);
+        final boolean gzip = range == null && compressible && Gzip.isAccepted(ctx);
+        final String variantEtag = gzip ? Gzip.etag(etag) : etag;
+
+        final Response response = ctx.getResponse();
+        response.contentType(contentType);
+        response.getHeaders()
+                .set(HttpHeaderNames.ACCEPT_RANGES, "bytes")
+                .set(HttpHeaderNames.ETAG, variantEtag)
+                .setDate(HttpHeaderNames.LAST_MODIFIED, Date.from(lastModified));
+        if (compressible) {
+            response.getHeaders().set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+        if (isNotModified(ctx, variantEtag, lastModified)) {
+            response.status(304).send();
+            return;
+        }
+        if (gzip) {
+            sendGzipped(ctx, file, contentType);
+            return;
+        }
+
+        final Matcher byteRange = range != null ? BYTE_RANGE.matcher(range.trim()) : null;
+        if (byteRange != null && byteRange.matches() && !(byteRange.group(1).isEmpty() && byteRange.group(2).isEmpty())
+                && isRangeCurrent(ctx, etag, lastModified)) {
+            final long start;
+            final long end;
+            if (byteRange.group(1).isEmpty()) {
+                start = Math.max(0, size - Long.parseLong(byteRange.group(2)));
+                end = size - 1;
+            } else {
+                start = Long.parseLong(byteRange.group(1));
+                end = byteRange.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(byteRange.group(2)), size - 1);
+            }
+            if (start > end) {
+                response.getHeaders().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + size);
+                response.status(416).send();
+                return;
+            }
+            if (end - start < Integer.MAX_VALUE) {
+                sendRange(ctx, file, start, end, size);
+                return;
+            }
+        }
+        response.sendFile(file);
+    }
+
+    private static void sendGzipped(final Context ctx, final Path file, final String contentType) {
+        Blocking.get(() -> {
+            final FileStamp stamp = FileStamp.of(file);
+            final GzippedFile gzippedFile = GZIPPED_FILES.get(file);
+            if (gzippedFile != null && gzippedFile.stamp.equals(stamp)) {
+                return gzippedFile.content;
+            }
+            final byte[] compressed = Gzip.compress(Files.readAllBytes(file));
+            GZIPPED_FILES.put(file, new GzippedFile(stamp, compressed));
+            return compressed;
+        }).then(compressed -> Gzip.send(ctx, contentType, compressed));
+    }
+
+    private static void sendRange(final Context ctx, final Path file, final long start, final long end, final long size) {
+        final int length = (int) (end - start + 1);
+        Blocking.get(() -> {
+            final ByteBuf buffer = ctx.get(ByteBufAllocator.class).buffer(length);
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (buffer.readableBytes() < length) {
+                    if (buffer.writeBytes(channel, start + buffer.readableBytes(), length - buffer.readableBytes()) < 0) {
+                        break;
+                    }
+                }
+                return buffer;
+            } catch (Exception e) {
+                buffer.release();
+                throw e;
+            }
+        }).then(buffer -> {
+            final Response response = ctx.getResponse();
+            response.getHeaders().set(HttpHeaderNames.CONTENT_RANGE, "bytes " + start + "-" + (start + buffer.readableBytes() - 1) + "/" + size);
+            response.status(206).send(buffer);
+        });
+    }
+
+    /**
+     * Returns true iff. the client's copy with the given etag or modification date is current.
+     *
+     * @param ctx          the request context
+     * @param etag         the etag of the current content
+     * @param lastModified the modification date of the current content
+     * @return true iff. the request should be answered with 304 Not Modified
+     */
+    public static boolean isNotModified(final Context ctx, final String etag, final Instant lastModified) {
+        final Headers headers = ctx.getRequest().getHeaders();
+        final String ifNoneMatch = headers.get(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            final List<String> etags = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(ifNoneMatch);
+            return etags.contains("*") || etags.contains(etag) || etags.contains("W/" + etag);
+        }
+        final Date ifModifiedSince = headers.getDate(HttpHeaderNames.IF_MODIFIED_SINCE);
+        return ifModifiedSince != null && !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(ifModifiedSince.toInstant());
+    }
+
+    private static boolean isRangeCurrent(final Context ctx, final String etag, final Instant lastModified) {
+        final Headers headers = ctx.getRequest().getHeaders();
+        final String ifRange = headers.get(HttpHeaderNames.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        final Date date = headers.getDate(HttpHeaderNames.IF_RANGE);
+        return date != null && lastModified.truncatedTo(ChronoUnit.SECONDS).equals(date.toInstant());
+    }
+
+    private static class GzippedFile {
+        private final FileStamp stamp;
+        private final byte[] content;
+
+        private GzippedFile(final FileStamp stamp, final byte[] content) {
+            this.stamp = stamp;
+            this.content = content;
+        }
+    }
+}
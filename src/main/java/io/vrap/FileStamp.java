@@ -0,0 +1,47 @@
+package io.vrap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * The modification time and size of a file, used to detect changes of cached files.
+ */
+class FileStamp {
+    private final FileTime lastModified;
+    private final long size;
+
+    private FileStamp(final FileTime lastModified, final long size) {
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    public FileTime getLastModified() {
+        return lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public static FileStamp of(final Path filePath) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        return new FileStamp(attributes.lastModifiedTime(), attributes.size());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final FileStamp stamp = (FileStamp) o;
+        return size == stamp.size && lastModified.equals(stamp.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lastModified, size);
+    }
+}
@@ -0,0 +1,55 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+/**
+ * Reads single fields of an application/x-www-form-urlencoded body without parsing the whole form.
+ *
+ * The body is scanned in place without changing its indices, only the value of the matching field is decoded.
+ */
+class FormScanner {
+
+    private FormScanner() {
+    }
+
+    /**
+     * Returns the decoded value of the first field with the given name.
+     *
+     * @param body the form body
+     * @param name the unencoded field name
+     * @return the decoded value or null if the body has no such field
+     */
+    public static String value(final ByteBuf body, final String name) {
+        final int end = body.writerIndex();
+        int fieldStart = body.readerIndex();
+        while (fieldStart < end) {
+            int fieldEnd = body.indexOf(fieldStart, end, (byte) '&');
+            if (fieldEnd < 0) {
+                fieldEnd = end;
+            }
+            if (nameMatches(body, fieldStart, fieldEnd, name)) {
+                final int valueStart = fieldStart + name.length() + 1;
+                return valueStart < fieldEnd ?
+                        QueryStringDecoder.decodeComponent(body.toString(valueStart, fieldEnd - valueStart, Charsets.UTF_8), Charsets.UTF_8) :
+                        "";
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        return null;
+    }
+
+    private static boolean nameMatches(final ByteBuf body, final int fieldStart, final int fieldEnd, final String name) {
+        final int nameEnd = fieldStart + name.length();
+        if (nameEnd > fieldEnd || (nameEnd < fieldEnd && body.getByte(nameEnd) != '=')) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (body.getByte(fieldStart + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package io.vrap;
+
+import com.google.common.base.Splitter;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import ratpack.handling.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip content encoding of responses.
+ *
+ * The callers compress each version of a content once and send the compressed variant with a content encoding,
+ * which keeps the server from compressing the response again for each request.
+ */
+class Gzip {
+
+    /**
+     * Returns true iff. the accept encoding header of the request accepts gzip.
+     *
+     * @param ctx the request context
+     * @return true iff. gzip is accepted
+     */
+    public static boolean isAccepted(final Context ctx) {
+        final String acceptEncoding = ctx.getRequest().getHeaders().get(HttpHeaderNames.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (final String coding : Splitter.on(',').trimResults().omitEmptyStrings().split(acceptEncoding)) {
+            final List<String> parameters = Splitter.on(';').trimResults().splitToList(coding);
+            final String name = parameters.get(0).toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (final String parameter : parameters.subList(1, parameters.size())) {
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = quality;
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        return gzip != null ? gzip > 0 : any != null && any > 0;
+    }
+
+    /**
+     * Returns true iff. content of the given type is worth to be compressed.
+     *
+     * @param contentType the content type
+     * @return true iff. the content type is textual
+     */
+    public static boolean isCompressible(final String contentType) {
+        final String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.contains("json") || type.contains("javascript") || type.contains("xml")
+                || type.contains("yaml") || type.contains("raml");
+    }
+
+    public static byte[] compress(final byte[] content) {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Returns the etag of the gzip variant of the content with the given etag.
+     *
+     * @param etag the etag of the uncompressed content
+     * @return the etag of the compressed content
+     */
+    public static String etag(final String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    /**
+     * Sends gzip compressed content.
+     *
+     * @param ctx         the request context
+     * @param contentType the content type of the uncompressed content
+     * @param compressed  the compressed content
+     */
+    public static void send(final Context ctx, final String contentType, final byte[] compressed) {
+        ctx.getResponse().getHeaders().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+        ctx.getResponse().send(contentType, compressed);
+    }
+}
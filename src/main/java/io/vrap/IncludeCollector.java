@@ -1,43 +1,90 @@
 package io.vrap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Collects the includes files of a raml file.
+ *
+ * The files are read level by level, the files of a level concurrently on a bounded pool.
+ * Each file is read once, no matter how often it is included, so cyclic includes terminate.
  */
 class IncludeCollector {
+    private final static Logger LOG = LoggerFactory.getLogger(IncludeCollector.class);
     private final static Pattern INCLUDE_TAG_PATTERN = Pattern.compile("(\\s*)([^#]+) !include (\\S+)");
+    private final static int PARALLELISM = 8;
 
     private final Path ramlFile;
 
     public IncludeCollector(final Path ramlFile) {
-        this.ramlFile = ramlFile;
+        this.ramlFile = ramlFile.toAbsolutePath().normalize();
     }
 
-    public List<Path> collect()  {
+    public IncludeGraph collect() {
+        final Map<Path, Set<Path>> includes = new LinkedHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+            final Thread thread = new Thread(runnable, "vrap-include-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            return collect(ramlFile);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            List<Path> level = Collections.singletonList(ramlFile);
+            while (!level.isEmpty()) {
+                final List<Future<Set<Path>>> futures = new ArrayList<>();
+                for (final Path file : level) {
+                    futures.add(executor.submit(() -> includes(file)));
+                }
+                final List<Path> nextLevel = new ArrayList<>();
+                for (int i = 0; i < level.size(); i++) {
+                    final Set<Path> fileIncludes = await(futures.get(i));
+                    includes.put(level.get(i), fileIncludes);
+                    for (final Path include : fileIncludes) {
+                        if (!includes.containsKey(include) && !nextLevel.contains(include)) {
+                            nextLevel.add(include);
+                        }
+                    }
+                }
+                level = nextLevel;
+            }
+        } finally {
+            executor.shutdownNow();
         }
+        final IncludeGraph graph = new IncludeGraph(ramlFile, includes);
+        for (final List<Path> cycle : graph.getCycles()) {
+            LOG.warn("Cyclic include {}", cycle);
+        }
+        return graph;
     }
 
-    private List<Path> collect(final Path current) throws IOException {
-        final List<Path> includePaths = new ArrayList<>();
-        for (final String line : Files.readAllLines(current)) {
+    private static Set<Path> includes(final Path file) throws IOException {
+        final Set<Path> includePaths = new LinkedHashSet<>();
+        for (final String line : Files.readAllLines(file)) {
             final Matcher matcher = INCLUDE_TAG_PATTERN.matcher(line);
             if (matcher.matches()) {
-                final Path includePath = current.getParent().resolve(matcher.group(3));
-                includePaths.add(includePath);
-                includePaths.addAll(collect(includePath));
+                includePaths.add(file.getParent().resolve(matcher.group(3)).normalize());
             }
         }
         return includePaths;
     }
+
+    private static <T> T await(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof IOException ? new UncheckedIOException((IOException) cause) : new RuntimeException(cause);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package io.vrap;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The include graph of a raml file, with an edge from each file to the files it includes.
+ *
+ * All paths are absolute and normalized.
+ */
+class IncludeGraph {
+    private final Path root;
+    private final Map<Path, Set<Path>> includes;
+    private final Map<Path, Set<Path>> includers = new HashMap<>();
+
+    IncludeGraph(final Path root, final Map<Path, Set<Path>> includes) {
+        this.root = root;
+        this.includes = includes;
+        includes.forEach((file, fileIncludes) -> fileIncludes.forEach(include ->
+                includers.computeIfAbsent(include, k -> new LinkedHashSet<>()).add(file)));
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the raml file and all of its direct and indirect includes.
+     *
+     * @return the files of the graph
+     */
+    public List<Path> getFiles() {
+        return new ArrayList<>(includes.keySet());
+    }
+
+    /**
+     * @param file the file
+     * @return the files directly included by the given file
+     */
+    public Set<Path> getIncludes(final Path file) {
+        return includes.getOrDefault(file, Collections.emptySet());
+    }
+
+    /**
+     * @param file the file
+     * @return the files which directly include the given file
+     */
+    public Set<Path> getIncluders(final Path file) {
+        return includers.getOrDefault(file, Collections.emptySet());
+    }
+
+    /**
+     * Returns the cycles of the graph, each as the path of files from the first file of the cycle back to it.
+     *
+     * @return the cycles
+     */
+    public List<List<Path>> getCycles() {
+        final List<List<Path>> cycles = new ArrayList<>();
+        final Set<Path> visited = new HashSet<>();
+        final Deque<Path> path = new ArrayDeque<>();
+        final Deque<Iterator<Path>> pending = new ArrayDeque<>();
+
+        visited.add(root);
+        path.addLast(root);
+        pending.push(getIncludes(root).iterator());
+        while (!pending.isEmpty()) {
+            final Iterator<Path> children = pending.peek();
+            if (!children.hasNext()) {
+                pending.pop();
+                path.removeLast();
+                continue;
+            }
+            final Path child = children.next();
+            if (path.contains(child)) {
+                final List<Path> cycle = new ArrayList<>();
+                boolean inCycle = false;
+                for (final Path file : path) {
+                    inCycle |= file.equals(child);
+                    if (inCycle) {
+                        cycle.add(file);
+                    }
+                }
+                cycle.add(child);
+                cycles.add(cycle);
+            } else if (visited.add(child)) {
+                path.addLast(child);
+                pending.push(getIncludes(child).iterator());
+            }
+        }
+        return cycles;
+    }
+}
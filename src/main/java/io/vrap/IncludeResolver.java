@@ -4,45 +4,155 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Resolves the inline tags of a raml file by inlining their content.
+ *
+ * The parsed lines of each file and the expanded content of each (file, indent) pair are cached.
+ * A cached entry is used as long as the modification time and size of all files it was built from are unchanged,
+ * so an instance should be shared to serve the resolved files from the cache.
  */
 class IncludeResolver {
     private final static Pattern INCLUDE_TAG_PATTERN = Pattern.compile("(\\s*)([^#]+) !include (\\S+)");
 
+    private final ConcurrentMap<Path, SourceFile> sourceFiles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<List<Object>, Expansion> expansions = new ConcurrentHashMap<>();
+
     public StringWriter preprocess(final Path filePath) throws IOException {
-        return preprocess(filePath, "");
+        final StringWriter stringWriter = new StringWriter();
+        stringWriter.append(resolve(filePath).getContent());
+        return stringWriter;
     }
 
-    private StringWriter preprocess(final Path filePath, final String currentIndent) throws IOException {
-        final StringWriter stringWriter = new StringWriter();
+    /**
+     * Resolves the includes of the given file.
+     *
+     * @param filePath the raml file
+     * @return the resolved content and the files it was built from
+     */
+    public Expansion resolve(final Path filePath) throws IOException {
+        return expand(filePath.toAbsolutePath().normalize(), "");
+    }
 
-        for (final String line : Files.readAllLines(filePath)) {
-            final Matcher matcher = INCLUDE_TAG_PATTERN.matcher(line);
+    private Expansion expand(final Path filePath, final String currentIndent) throws IOException {
+        final List<Object> key = Arrays.asList(filePath, currentIndent);
+        final Expansion cached = expansions.get(key);
+        if (cached != null && cached.isFresh()) {
+            return cached;
+        }
 
-            if (line.startsWith("extends:")) {
-                stringWriter.append(line).append("?include").append("\n");
+        final SourceFile sourceFile = sourceFile(filePath);
+        final StringBuilder content = new StringBuilder();
+        final Map<Path, FileStamp> dependencies = new HashMap<>();
+        dependencies.put(filePath, sourceFile.stamp);
+
+        for (final SourceLine line : sourceFile.lines) {
+            if (line.text.startsWith("extends:")) {
+                content.append(line.text).append("?include").append("\n");
                 continue;
             }
-            if (!line.startsWith("#%RAML 1.0 DataType")) {
-                if (matcher.matches()) {
-                    final String indent = matcher.group(1) + "  ";
-                    final Path includePath = filePath.getParent().resolve(matcher.group(3));
-                    stringWriter.append(currentIndent).append(matcher.group(1)).append(matcher.group(2));
-                    if (!includePath.getFileName().toString().endsWith(".raml")) {
-                        stringWriter.append(" |");
+            if (!line.text.startsWith("#%RAML 1.0 DataType")) {
+                if (line.includePath != null) {
+                    final String indent = line.indent + "  ";
+                    content.append(currentIndent).append(line.indent).append(line.key);
+                    if (!line.includePath.getFileName().toString().endsWith(".raml")) {
+                        content.append(" |");
                     }
-                    stringWriter.append("\n");
-                    final StringWriter includeWriter = preprocess(includePath, currentIndent + indent);
-                    stringWriter.append(includeWriter.toString()).append("\n");
+                    content.append("\n");
+                    final Expansion included = expand(line.includePath, currentIndent + indent);
+                    content.append(included.content).append("\n");
+                    dependencies.putAll(included.dependencies);
                 } else {
-                    stringWriter.append(currentIndent).append(line).append("\n");
+                    content.append(currentIndent).append(line.text).append("\n");
                 }
             }
         }
-        return stringWriter;
+        final Expansion expansion = new Expansion(content.toString(), dependencies);
+        expansions.put(key, expansion);
+        return expansion;
+    }
+
+    private SourceFile sourceFile(final Path filePath) throws IOException {
+        final FileStamp stamp = FileStamp.of(filePath);
+        final SourceFile cached = sourceFiles.get(filePath);
+        if (cached != null && cached.stamp.equals(stamp)) {
+            return cached;
+        }
+        final List<SourceLine> lines = new ArrayList<>();
+        for (final String line : Files.readAllLines(filePath)) {
+            final Matcher matcher = INCLUDE_TAG_PATTERN.matcher(line);
+            lines.add(matcher.matches() ?
+                    new SourceLine(line, matcher.group(1), matcher.group(2), filePath.getParent().resolve(matcher.group(3)).normalize()) :
+                    new SourceLine(line, null, null, null));
+        }
+        final SourceFile sourceFile = new SourceFile(stamp, lines);
+        sourceFiles.put(filePath, sourceFile);
+        return sourceFile;
+    }
+
+    private static class SourceFile {
+        private final FileStamp stamp;
+        private final List<SourceLine> lines;
+
+        private SourceFile(final FileStamp stamp, final List<SourceLine> lines) {
+            this.stamp = stamp;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * A line of a raml file, with its include tag parsed if it has one.
+     */
+    private static class SourceLine {
+        private final String text;
+        private final String indent;
+        private final String key;
+        private final Path includePath;
+
+        private SourceLine(final String text, final String indent, final String key, final Path includePath) {
+            this.text = text;
+            this.indent = indent;
+            this.key = key;
+            this.includePath = includePath;
+        }
+    }
+
+    /**
+     * The expanded content of a file and the stamps of all files it was built from.
+     */
+    static class Expansion {
+        private final String content;
+        private final Map<Path, FileStamp> dependencies;
+
+        private Expansion(final String content, final Map<Path, FileStamp> dependencies) {
+            this.content = content;
+            this.dependencies = dependencies;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public Map<Path, FileStamp> getDependencies() {
+            return Collections.unmodifiableMap(dependencies);
+        }
+
+        boolean isFresh() {
+            try {
+                for (final Map.Entry<Path, FileStamp> dependency : dependencies.entrySet()) {
+                    if (!dependency.getValue().equals(FileStamp.of(dependency.getKey()))) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
     }
 }
@@ -0,0 +1,180 @@
+package io.vrap;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Replaces a set of literal strings in a single pass over the content.
+ *
+ * The literals are matched with an Aho-Corasick automaton. When several literals match, the leftmost one is
+ * replaced and of those starting at the same position the longest one. As a streaming transformation it only
+ * buffers the characters of a possible match, so at most as many characters as the longest literal.
+ */
+class LiteralReplacer implements Function<String, String>, ContentTransformer {
+    private final static int ROOT = 0;
+
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> depths = new ArrayList<>();
+    private final List<String> replacements = new ArrayList<>();
+    private int[] failures;
+    private int[] outputs;
+
+    /**
+     * @param replacements the replacement of each literal
+     */
+    public LiteralReplacer(final Map<String, String> replacements) {
+        addState(0);
+        for (final Map.Entry<String, String> replacement : replacements.entrySet()) {
+            if (!replacement.getKey().isEmpty()) {
+                int state = ROOT;
+                for (final char c : replacement.getKey().toCharArray()) {
+                    final int parent = state;
+                    state = transitions.get(parent).computeIfAbsent(c, k -> addState(depths.get(parent) + 1));
+                }
+                this.replacements.set(state, replacement.getValue());
+            }
+        }
+        computeFailures();
+    }
+
+    private int addState(final int depth) {
+        transitions.add(new HashMap<>());
+        depths.add(depth);
+        replacements.add(null);
+        return depths.size() - 1;
+    }
+
+    /**
+     * Computes the failure transitions and for each state the next state on its failure path which ends a literal.
+     */
+    private void computeFailures() {
+        failures = new int[depths.size()];
+        outputs = new int[depths.size()];
+        outputs[ROOT] = -1;
+        final Deque<Integer> pending = new ArrayDeque<>();
+        for (final int child : transitions.get(ROOT).values()) {
+            failures[child] = ROOT;
+            outputs[child] = -1;
+            pending.add(child);
+        }
+        while (!pending.isEmpty()) {
+            final int state = pending.remove();
+            for (final Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                final int child = transition.getValue();
+                final int failure = next(failures[state], transition.getKey());
+                failures[child] = failure;
+                outputs[child] = replacements.get(failure) != null ? failure : outputs[failure];
+                pending.add(child);
+            }
+        }
+    }
+
+    private int next(int state, final char c) {
+        while (state != ROOT && !transitions.get(state).containsKey(c)) {
+            state = failures[state];
+        }
+        return transitions.get(state).getOrDefault(c, ROOT);
+    }
+
+    @Override
+    public String apply(final String content) {
+        final StringWriter out = new StringWriter(content.length());
+        try (final Writer writer = wrap(out)) {
+            writer.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public Writer wrap(final Writer out) {
+        return new ReplacingWriter(out);
+    }
+
+    private class ReplacingWriter extends Writer {
+        private final Writer out;
+        /**
+         * The characters which might still be part of a match.
+         */
+        private final StringBuilder pending = new StringBuilder();
+        private int state = ROOT;
+        /**
+         * The leftmost longest match found in the pending characters, with its start index and final state.
+         */
+        private int matchStart = -1;
+        private int matchState;
+
+        ReplacingWriter(final Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(cbuf[i]);
+            }
+        }
+
+        private void write(final char c) throws IOException {
+            pending.append(c);
+            state = next(state, c);
+            final int end = pending.length();
+            for (int output = replacements.get(state) != null ? state : outputs[state]; output != -1; output = outputs[output]) {
+                final int start = end - depths.get(output);
+                if (matchStart == -1 || start < matchStart || start == matchStart && depths.get(output) > depths.get(matchState)) {
+                    matchStart = start;
+                    matchState = output;
+                }
+            }
+            // no match can start before the longest partial match of the current state
+            final int partialStart = end - depths.get(state);
+            if (matchStart != -1 && partialStart > matchStart) {
+                replaceMatch();
+            } else {
+                final int flushable = matchStart == -1 ? partialStart : Math.min(partialStart, matchStart);
+                if (flushable > 0) {
+                    out.append(pending, 0, flushable);
+                    pending.delete(0, flushable);
+                    if (matchStart != -1) {
+                        matchStart -= flushable;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes the match and feeds the characters following it again.
+         */
+        private void replaceMatch() throws IOException {
+            final String remaining = pending.substring(matchStart + depths.get(matchState));
+            out.append(pending, 0, matchStart).write(replacements.get(matchState));
+            pending.setLength(0);
+            state = ROOT;
+            matchStart = -1;
+            for (final char c : remaining.toCharArray()) {
+                write(c);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            while (matchStart != -1) {
+                replaceMatch();
+            }
+            out.append(pending);
+            pending.setLength(0);
+            state = ROOT;
+            out.close();
+        }
+    }
+}
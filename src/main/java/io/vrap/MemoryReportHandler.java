@@ -0,0 +1,57 @@
+package io.vrap;
+
+import ratpack.exec.Blocking;
+import ratpack.handling.Context;
+import ratpack.handling.Handler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static ratpack.jackson.Jackson.json;
+
+/**
+ * Reports the estimated retained size of the loaded models, routes and validators of each api.
+ *
+ * The sizes are exclusive, objects counted for the raml model aren't counted again for the routes.
+ */
+class MemoryReportHandler implements Handler {
+    private final List<SpecReloader> reloaders;
+
+    public MemoryReportHandler(final List<SpecReloader> reloaders) {
+        this.reloaders = reloaders;
+    }
+
+    @Override
+    public void handle(final Context ctx) throws Exception {
+        Blocking.get(this::report).then(report -> ctx.render(json(report)));
+    }
+
+    private Map<String, Object> report() {
+        final Map<String, Object> report = new LinkedHashMap<>();
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final Map<String, Object> heapReport = new LinkedHashMap<>();
+        heapReport.put("used", heap.getUsed());
+        heapReport.put("committed", heap.getCommitted());
+        heapReport.put("max", heap.getMax());
+        report.put("heap", heapReport);
+        report.put("apis", reloaders.stream().map(this::apiReport).collect(Collectors.toList()));
+        return report;
+    }
+
+    private Map<String, Object> apiReport(final SpecReloader reloader) {
+        final ApiModels models = reloader.get();
+        final RetainedSize retainedSize = new RetainedSize();
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("file", reloader.getOptions().getFilePath().toString());
+        report.put("mount", reloader.getOptions().getMount().orElse(""));
+        report.put("ramlModel", models.getRamlRepo() != null ? retainedSize.estimate(models.getRamlRepo()) : 0);
+        report.put("rmfModel", models.getRmfRepo() != null ? retainedSize.estimate(models.getRmfRepo()) : 0);
+        report.put("routes", retainedSize.estimate(models.getRamlRoutes()) + retainedSize.estimate(models.getRmfRoutes()) + retainedSize.estimate(models.getAuthRoutes()));
+        report.put("validators", retainedSize.estimate(models.getValidator()) + retainedSize.estimate(models.getRmfValidator()));
+        return report;
+    }
+}
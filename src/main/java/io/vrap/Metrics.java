@@ -0,0 +1,183 @@
+package io.vrap;
+
+import ratpack.handling.Context;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counts and latency histograms of the routes, written in the Prometheus text format.
+ *
+ * Requests are labelled by route template, method, mode and status, the phases of a request by route template,
+ * method and phase. All instruments are made of {@link LongAdder}s, so recording never blocks.
+ */
+class Metrics {
+    public final static String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    public final static String REQUEST_VALIDATION = "request_validation";
+    public final static String UPSTREAM = "upstream";
+    public final static String RESPONSE_VALIDATION = "response_validation";
+    public final static String FORWARD = "forward";
+
+    private final static List<String> REQUEST_LABELS = Arrays.asList("route", "method", "mode", "status");
+    private final static List<String> PHASE_LABELS = Arrays.asList("route", "method", "phase");
+
+    /**
+     * The upper bounds of the histogram buckets in seconds, log-linear from half a millisecond to a minute.
+     */
+    private final static double[] BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+    private final static long[] BUCKET_NANOS = Arrays.stream(BUCKETS).mapToLong(bucket -> (long) (bucket * TimeUnit.SECONDS.toNanos(1))).toArray();
+
+    private final ConcurrentMap<List<String>, Histogram> requests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<List<String>, Histogram> phases = new ConcurrentHashMap<>();
+
+    /**
+     * Starts timing a request, it's recorded when the request is closed.
+     *
+     * @param ctx    the request context
+     * @param route  the route template
+     * @param method the request method
+     * @param mode   the vrap mode of the request
+     * @return the timer for the phases of the request
+     */
+    public Timer start(final Context ctx, final String route, final String method, final String mode) {
+        final Timer timer = new Timer(route, method);
+        ctx.onClose(outcome -> histogram(requests, Arrays.asList(route, method, mode, String.valueOf(outcome.getResponse().getStatus().getCode())))
+                .record(System.nanoTime() - timer.startNanos));
+        return timer;
+    }
+
+    /**
+     * Records the duration of a phase if the request is timed, also for the {@link ServerTiming} and the
+     * {@link Tracing} of the request.
+     *
+     * @param ctx        the request context
+     * @param phase      the phase
+     * @param startNanos the {@link System#nanoTime()} the phase started at
+     */
+    public static void phase(final Context ctx, final String phase, final long startNanos) {
+        final long duration = System.nanoTime() - startNanos;
+        ctx.maybeGet(Timer.class).ifPresent(timer -> timer.phase(phase, duration));
+        ServerTiming.phase(ctx, phase, duration);
+        Tracing.phase(ctx, phase, startNanos, duration);
+    }
+
+    private static Histogram histogram(final ConcurrentMap<List<String>, Histogram> histograms, final List<String> labels) {
+        final Histogram histogram = histograms.get(labels);
+        if (histogram != null) {
+            return histogram;
+        }
+        final Histogram created = new Histogram();
+        final Histogram existing = histograms.putIfAbsent(labels, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     *
+     * @return the metrics
+     */
+    public String scrape() {
+        final StringBuilder out = new StringBuilder();
+        final Map<List<String>, Histogram> sortedRequests = new TreeMap<>(Metrics::compare);
+        sortedRequests.putAll(requests);
+        final Map<List<String>, Histogram> sortedPhases = new TreeMap<>(Metrics::compare);
+        sortedPhases.putAll(phases);
+
+        out.append("# HELP vrap_requests_total Requests handled by the routes.\n");
+        out.append("# TYPE vrap_requests_total counter\n");
+        sortedRequests.forEach((labels, histogram) ->
+                out.append("vrap_requests_total").append(labels(REQUEST_LABELS, labels, null)).append(' ').append(histogram.count.sum()).append('\n'));
+
+        out.append("# HELP vrap_request_duration_seconds Latency of the requests handled by the routes.\n");
+        out.append("# TYPE vrap_request_duration_seconds histogram\n");
+        sortedRequests.forEach((labels, histogram) -> histogram.write(out, "vrap_request_duration_seconds", REQUEST_LABELS, labels));
+
+        out.append("# HELP vrap_phase_duration_seconds Latency of the request validation, upstream round trip, response validation and forwarding.\n");
+        out.append("# TYPE vrap_phase_duration_seconds histogram\n");
+        sortedPhases.forEach((labels, histogram) -> histogram.write(out, "vrap_phase_duration_seconds", PHASE_LABELS, labels));
+        return out.toString();
+    }
+
+    private static int compare(final List<String> a, final List<String> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            final int result = a.get(i).compareTo(b.get(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return a.size() - b.size();
+    }
+
+    private static String labels(final List<String> names, final List<String> values, final String le) {
+        final StringBuilder labels = new StringBuilder("{");
+        for (int i = 0; i < names.size(); i++) {
+            labels.append(i > 0 ? "," : "").append(names.get(i)).append("=\"").append(escape(values.get(i))).append('"');
+        }
+        if (le != null) {
+            labels.append(",le=\"").append(le).append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Times the phases of a request, registered on the request context by the routes.
+     */
+    class Timer {
+        private final String route;
+        private final String method;
+        private final long startNanos = System.nanoTime();
+
+        private Timer(final String route, final String method) {
+            this.route = route;
+            this.method = method;
+        }
+
+        void phase(final String phase, final long durationNanos) {
+            histogram(phases, Arrays.asList(route, method, phase)).record(durationNanos);
+        }
+    }
+
+    private static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(final long durationNanos) {
+            final int index = Arrays.binarySearch(BUCKET_NANOS, durationNanos);
+            buckets[index >= 0 ? index : -index - 1].increment();
+            sumNanos.add(durationNanos);
+            count.increment();
+        }
+
+        void write(final StringBuilder out, final String name, final List<String> labelNames, final List<String> labelValues) {
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                final String le = i < BUCKETS.length ? String.valueOf(BUCKETS[i]) : "+Inf";
+                out.append(name).append("_bucket").append(labels(labelNames, labelValues, le)).append(' ').append(cumulative).append('\n');
+            }
+            out.append(name).append("_sum").append(labels(labelNames, labelValues, null)).append(' ')
+                    .append(sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+            out.append(name).append("_count").append(labels(labelNames, labelValues, null)).append(' ').append(cumulative).append('\n');
+        }
+    }
+}
@@ -14,6 +14,13 @@ interface QueryParams {
      */
     String INCLUDE = "include";
 
+    /**
+     * Enables replacing the base uris of the files in the spec archive.
+     *
+     * @see SpecArchive
+     */
+    String REWRITE = "rewrite";
+
     /**
      * Returns true iff. the given parameter has the {@link #INCLUDE} query parameter.
      *
@@ -36,6 +43,17 @@ interface QueryParams {
         return resolveIncludes(context.getRequest());
     }
 
+    /**
+     * Returns true iff. the given context has the {@link #REWRITE} query parameter.
+     *
+     * @param context the context
+     *
+     * @return true iff. the rewrite query parameter is present
+     */
+    static boolean rewriteBaseUri(final Context context) {
+        return context.getRequest().getQueryParams().containsKey(REWRITE);
+    }
+
     /**
      * Returns the supported query params as query string.
      *
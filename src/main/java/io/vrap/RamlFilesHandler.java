@@ -1,40 +1,47 @@
 package io.vrap;
 
+import com.github.jknack.handlebars.Handlebars;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import io.netty.handler.codec.http.HttpHeaderNames;
-import org.raml.v2.api.model.v10.api.Api;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ratpack.file.MimeTypes;
+import ratpack.func.Action;
+import ratpack.func.Factory;
 import ratpack.func.Predicate;
 import ratpack.handling.Context;
 import ratpack.handling.Handler;
 import ratpack.handling.Handlers;
-import ratpack.handling.RequestLogger;
 import ratpack.http.MediaType;
-import ratpack.http.Response;
 import ratpack.http.internal.MimeParse;
 import ratpack.registry.Registry;
 
 import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
-import static ratpack.handlebars.Template.handlebarsTemplate;
-
 /**
  * Serves raml files from the given base dir.
  */
 class RamlFilesHandler {
     private final static Logger LOG = LoggerFactory.getLogger(RamlFilesHandler.class);
 
+    private final static String HTML_UTF8 = "text/html;charset=UTF-8";
+
     private final Handler handler;
 
-    public RamlFilesHandler(final FileContentModifier contentModifier, final String extensionDir, final String apiPath) {
-        handler = new RamlHandler(contentModifier, extensionDir, apiPath);
+    public RamlFilesHandler(final FileContentModifier contentModifier, final IncludeResolver includeResolver, final String extensionDir, final String apiPath) {
+        handler = new RamlHandler(contentModifier, includeResolver, extensionDir, apiPath);
     }
 
     public Handler getHandler() {
@@ -47,15 +54,14 @@ class RamlFilesHandler {
 
         private final Handler delegate;
 
-        public RamlHandler(final FileContentModifier contentModifier, final String extensionDir, final String apiPath) {
+        public RamlHandler(final FileContentModifier contentModifier, final IncludeResolver includeResolver, final String extensionDir, final String apiPath) {
             final Registry registry = Registry.builder().add("get").build();
             final Handler chain = Handlers.chain(
-                    RequestLogger.ncsa(LOG),
                     Handlers.when(
                             isJsonFile(),
                             new JsonFileHandler(contentModifier, extensionDir, apiPath)
                     ),
-                    new RamlFileHandler(contentModifier, extensionDir, apiPath)
+                    new RamlFileHandler(contentModifier, includeResolver, extensionDir, apiPath)
             );
             this.delegate = Handlers.register(registry, chain);
         }
@@ -87,69 +93,96 @@ class RamlFilesHandler {
 
         @Override
         public void handle(Context ctx) throws Exception {
-            final RamlModelRepository ramlModelRepository = ctx.get(RamlModelRepository.class);
-            final Api api = ramlModelRepository.getApi();
-            final Path filePath = ramlModelRepository.getFilePath();
-            final Path parent = ramlModelRepository.getParent();
+            final Path filePath = ctx.get(VrapApp.VrapOptions.class).getFilePath();
             final String path = ctx.getPathBinding().getPastBinding();
-            final Path resolvedFilePath = path.isEmpty() ? filePath : parent.resolve(path).normalize();
+            final Path resolvedFilePath = path.isEmpty() ? filePath : filePath.getParent().resolve(path).normalize();
 
-            final String content = new BaseUriReplacer().preprocess(ctx, resolvedFilePath, api, apiPath).toString();
+            final Map<Path, FileStamp> dependencies = ImmutableMap.of(resolvedFilePath, FileStamp.of(resolvedFilePath));
             ctx.byContent(byContentSpec -> byContentSpec
-                    .json(() -> renderReplacedContent(ctx, content))
+                    .json(() -> sendCached(ctx, dependencies, negotiatedContentType(ctx),
+                            out -> ctx.get(BaseUriReplacer.class).preprocess(ctx, resolvedFilePath, apiPath, contentModifier.wrap(out))))
                     .noMatch("application/json"));
         }
     }
 
     private static class RamlFileHandler extends FileHandler {
+        private final IncludeResolver includeResolver;
 
-        public RamlFileHandler(final FileContentModifier contentModifier, final String extensionDir, final String apiPath) {
+        public RamlFileHandler(final FileContentModifier contentModifier, final IncludeResolver includeResolver, final String extensionDir, final String apiPath) {
             super(contentModifier, extensionDir, apiPath);
+            this.includeResolver = includeResolver;
         }
 
         @Override
         public void handle(Context ctx) throws Exception {
-            final RamlModelRepository ramlModelRepository = ctx.get(RamlModelRepository.class);
-            final Path filePath = ramlModelRepository.getFilePath();
-            final Path parent = ramlModelRepository.getParent();
+            final Path filePath = ctx.get(VrapApp.VrapOptions.class).getFilePath();
             final String path = ctx.getPathBinding().getPastBinding();
 
-            final Path resolvedFilePath = path.isEmpty() ? filePath : parent.resolve(path).normalize();
+            final Path resolvedFilePath = path.isEmpty() ? filePath : filePath.getParent().resolve(path).normalize();
             final File file = resolvedFilePath.toFile();
             if (file.exists()) {
-                final String content;
+                final Map<Path, FileStamp> dependencies;
+                final Factory<Reader> content;
                 if (QueryParams.resolveIncludes(ctx)) {
-                    content = new IncludeResolver().preprocess(resolvedFilePath).toString();
+                    final IncludeResolver.Expansion expansion = includeResolver.resolve(resolvedFilePath);
+                    dependencies = expansion.getDependencies();
+                    content = () -> new StringReader(expansion.getContent());
                 } else {
-                    content = Files.asByteSource(file).asCharSource(Charsets.UTF_8).read();
+                    dependencies = ImmutableMap.of(resolvedFilePath, FileStamp.of(resolvedFilePath));
+                    content = () -> Files.newReader(file, Charsets.UTF_8);
                 }
+                final boolean unmodified = !QueryParams.resolveIncludes(ctx) && contentModifier.isIdentity();
                 ctx.byContent(byContentSpec -> byContentSpec
-                        .type("application/raml+yaml", () -> renderReplacedContent(ctx, content))
-                        .html(() -> renderHtml(ctx, path, content))
+                        .type("application/raml+yaml", () -> {
+                            if (unmodified) {
+                                FileSender.send(ctx, resolvedFilePath, negotiatedContentType(ctx));
+                            } else {
+                                renderReplacedContent(ctx, dependencies, content);
+                            }
+                        })
+                        .html(() -> sendCached(ctx, dependencies, HTML_UTF8, out -> out.write(renderHtml(ctx, path, content))))
                         .noMatch("application/raml+yaml"));
             } else {
-                ctx.byContent(byContentSpec -> byContentSpec.noMatch(() -> ctx.render(ctx.file("api-raml/" + path))));
+                ctx.byContent(byContentSpec -> byContentSpec.noMatch(() ->
+                        FileSender.send(ctx, ctx.file("api-raml/" + path), ctx.get(MimeTypes.class).getContentType(path))));
             }
         }
 
-        private void renderHtml(final Context ctx, final String fileName, final String content) {
-            final RamlModelRepository ramlModelRepository = ctx.get(RamlModelRepository.class);
-            final Api api = ramlModelRepository.getApi();
+        private String renderHtml(final Context ctx, final String fileName, final Factory<Reader> contentReader) throws Exception {
+            final String content;
+            try (final Reader reader = contentReader.create()) {
+                content = CharStreams.toString(reader);
+            }
             final Integer port = ctx.getServerConfig().getPort();
 
             String contentWithIncludeLinks = content.replaceAll("(!include\\s*)(\\S*)", "$1<a class=\"hljs-string\" href=\"$2\">$2</a>");
             final ImmutableMap<String, String> model =
                     ImmutableMap.of("fileName", fileName,
                             "fileContent", contentWithIncludeLinks,
-                            "apiTitle", api.title().value(),
-                            "proxyUri", "http://localhost:" + port.toString());
-            ctx.render(handlebarsTemplate(model, "api-raml/raml.html"));
+                            "apiTitle", apiTitle(ctx),
+                            "proxyUri", "http://localhost:" + port.toString() + mountUri(ctx));
+            return ctx.get(Handlebars.class).compile("api-raml/raml.html").apply(model);
         }
     }
 
+    /**
+     * Returns the title of the api from the raml-parser-2 model or, if only the RMF model is loaded, from the RMF model.
+     */
+    private static String apiTitle(final Context ctx) {
+        final Optional<RamlModelRepository> ramlModelRepository = ctx.maybeGet(RamlModelRepository.class);
+        if (ramlModelRepository.isPresent()) {
+            return ramlModelRepository.get().getApi().title().value();
+        }
+        return ctx.get(RmfModelRepository.class).getApi().getTitle();
+    }
+
+    private static String mountUri(final Context ctx) {
+        return ctx.get(VrapApp.VrapOptions.class).getMount().map(mount -> "/" + mount).orElse("");
+    }
+
     abstract private static class FileHandler implements Handler {
 
-        private final FileContentModifier contentModifier;
+        final FileContentModifier contentModifier;
         final String extensionDir;
         final String apiPath;
 
@@ -159,13 +192,27 @@ class RamlFilesHandler {
             this.apiPath = apiPath;
         }
 
-        protected void renderReplacedContent(final Context ctx, final String content) {
-            final String replacedContent = contentModifier.apply(content);
+        protected String negotiatedContentType(final Context ctx) {
             final String acceptHeader = ctx.getRequest().getHeaders().get(HttpHeaderNames.ACCEPT);
             final List<String> contentTypes = Arrays.asList(MediaType.APPLICATION_JSON, "application/raml+yaml", MediaType.PLAIN_TEXT_UTF8);
-            final String contentType = MimeParse.bestMatch(contentTypes, acceptHeader);
-            final Response response = ctx.getResponse();
-            response.send(contentType, replacedContent);
+            return MimeParse.bestMatch(contentTypes, acceptHeader);
+        }
+
+        protected void renderReplacedContent(final Context ctx, final Map<Path, FileStamp> dependencies, final Factory<Reader> content) throws Exception {
+            sendCached(ctx, dependencies, negotiatedContentType(ctx), out -> {
+                try (final Reader reader = content.create()) {
+                    contentModifier.apply(reader, out);
+                }
+            });
+        }
+
+        /**
+         * Sends the rendered content from the {@link RenderedFileCache} of the current models,
+         * keyed by request path, include flag and content type.
+         */
+        protected void sendCached(final Context ctx, final Map<Path, FileStamp> dependencies, final String contentType, final Action<? super Writer> renderer) throws Exception {
+            final List<Object> key = Arrays.asList(ctx.getRequest().getPath(), QueryParams.resolveIncludes(ctx), contentType);
+            ctx.get(RenderedFileCache.class).send(ctx, key, dependencies, contentType, renderer);
         }
     }
 }
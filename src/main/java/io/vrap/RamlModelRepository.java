@@ -21,10 +21,12 @@ class RamlModelRepository implements Service {
 
     private final Path filePath;
     private final RamlModelResult ramlModelResult;
+    private final int errorCount;
 
     RamlModelRepository(final Path filePath, final Boolean strict) {
         this.filePath = filePath;
         this.ramlModelResult = new RamlModelBuilder().buildApi(filePath.toFile());
+        this.errorCount = ramlModelResult.hasErrors() ? ramlModelResult.getValidationResults().size() : 0;
 
         if (ramlModelResult.hasErrors()) {
             for (ValidationResult validationResult : ramlModelResult.getValidationResults()) {
@@ -69,6 +71,15 @@ class RamlModelRepository implements Service {
         return ramlModelResult.getValidationResults();
     }
 
+    /**
+     * Returns the number of errors the parser reported.
+     *
+     * @return the number of parse errors
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
     @Nullable
     public Api getApi() {
         return ramlModelResult.getApiV10();
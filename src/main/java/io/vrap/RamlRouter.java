@@ -17,7 +17,6 @@ import ratpack.func.Predicate;
 import ratpack.handling.Context;
 import ratpack.handling.Handler;
 import ratpack.handling.Handlers;
-import ratpack.handling.RequestLogger;
 import ratpack.http.Headers;
 import ratpack.http.Request;
 import ratpack.http.TypedData;
@@ -146,18 +145,21 @@ class RamlRouter {
         private final static Logger LOG = LoggerFactory.getLogger(Route.class);
         private static final String MODE_HEADER = "X-Vrap-Mode";
 
+        private final TokenIssuer.AccessTokenHandler accessTokenHandler = new TokenIssuer.AccessTokenHandler();
         private final RequestValidationHandler requestValidationHandler = new RequestValidationHandler();
         private final RequestProxyHandler requestProxyHandler = new RequestProxyHandler();
         private final RequestExampleHandler requestExampleHandler = new RequestExampleHandler();
         private final ReceivedResponseValidationHandler receivedResponseValidationHandler = new ReceivedResponseValidationHandler();
         private final ReceivedResponseForwardHandler receivedResponseForwardHandler = new ReceivedResponseForwardHandler();
 
+        private final String uriTemplate;
         private final Handler delegate;
 
         public Route(final Resource resource, final Method method) {
-            final Registry registry = Registry.builder().add(resource).add(method).build();
+            this.uriTemplate = resource.resourcePath();
+            final Registry registry = Registry.builder().add(resource).add(method).add(new RouteTemplate(uriTemplate)).build();
             final Handler chain = Handlers.chain(
-                    RequestLogger.ncsa(LOG),
+                    accessTokenHandler,
                     requestValidationHandler,
                     Handlers.when(isMode(VrapMode.proxy),
                             Handlers.chain(
@@ -173,7 +175,15 @@ class RamlRouter {
             final String path = ctx.getRequest().getPath();
             LOG.debug("Request path: {}", path);
 
-            delegate.handle(ctx);
+            ServerTiming.routeMatched(ctx);
+            Tracing.routeMatched(ctx, uriTemplate);
+            final Optional<Metrics> metrics = ctx.maybeGet(Metrics.class);
+            if (metrics.isPresent()) {
+                final Metrics.Timer timer = metrics.get().start(ctx, uriTemplate, ctx.getRequest().getMethod().getName(), mode(ctx).name());
+                ctx.insert(Registry.single(Metrics.Timer.class, timer), delegate);
+            } else {
+                delegate.handle(ctx);
+            }
         }
 
         private Predicate<Context> isMode(final VrapMode mode) {
@@ -206,7 +216,10 @@ class RamlRouter {
             final Validator validator = ctx.get(Validator.class);
             final boolean dryRun = ctx.get(VrapApp.VrapOptions.class).getDryRun();
             final Method method = ctx.get(Method.class);
+            final long start = System.nanoTime();
             final Optional<Validator.ValidationErrors> validationErrors = validator.validateRequest(ctx, body, method);
+            Metrics.phase(ctx, Metrics.REQUEST_VALIDATION, start);
+            validationErrors.ifPresent(errors -> ValidationHooks.record(ctx, ValidationErrorStats.REQUEST, null, errors.getErrors(), body));
 
             ctx.next(Registry.of(registrySpec -> {
                 registrySpec.add(TypedData.class, body);
@@ -251,10 +264,13 @@ class RamlRouter {
             final HttpClient httpClient = ctx.get(HttpClient.class);
             final URI proxiedUri = proxiedUri(ctx);
             final Boolean insecureSSL = ctx.get(VrapApp.VrapOptions.class).getSslVerificationMode() == SSLVerificationMode.insecure;
-            LOG.info("Forward to: {}", proxiedUri);
-            httpClient.request(proxiedUri, proxyRequest(body, request, insecureSSL))
-                    .then(receivedResponse ->
-                            ctx.next(Registry.builder().add(receivedResponse).add(proxiedUri).build()));
+            WarmUp.info(ctx, LOG, "Forward to: {}", proxiedUri);
+            final long start = System.nanoTime();
+            httpClient.request(proxiedUri, proxyRequest(body, request, insecureSSL).append(spec -> Tracing.propagate(ctx, spec.getHeaders())))
+                    .then(receivedResponse -> {
+                        Metrics.phase(ctx, Metrics.UPSTREAM, start);
+                        ctx.next(Registry.builder().add(receivedResponse).add(proxiedUri).build());
+                    });
         }
 
         private URI proxiedUri(final Context ctx) {
@@ -264,7 +280,9 @@ class RamlRouter {
 
             final Request request = ctx.getRequest();
             final String query = request.getQuery();
-            final String boundPath = request.getPath().replaceAll("^api/", "") + (!query.isEmpty() ? "?" + query : "");
+            final String apiPrefix = options.getMountPath() + VrapApp.API_URI + "/";
+            final String path = request.getPath().startsWith(apiPrefix) ? request.getPath().substring(apiPrefix.length()) : request.getPath();
+            final String boundPath = path + (!query.isEmpty() ? "?" + query : "");
 
             final String ramlBaseUri = api.baseUri().value();
             final String ramlBaseUriPath = URI.create(ramlBaseUri.replace("{", "%7B").replace("}", "%7D")).getPath().replace("%7B", "{").replace("%7D", "}");
@@ -300,6 +318,8 @@ class RamlRouter {
 
         @Override
         public void handle(Context ctx) throws Exception {
+            final long start = System.nanoTime();
+            ctx.onClose(outcome -> Metrics.phase(ctx, Metrics.FORWARD, start));
             ctx.get(ReceivedResponse.class).forwardTo(ctx.getResponse());
         }
     }
@@ -320,7 +340,11 @@ class RamlRouter {
             final Validator validator = ctx.get(Validator.class);
             final Boolean dryRun = ctx.get(VrapApp.VrapOptions.class).getDryRun();
             final Method method = ctx.get(Method.class);
+            final long start = System.nanoTime();
             final Optional<Validator.ValidationErrors> receivedResponseErrors = validator.validateReceivedResponse(ctx, receivedResponse, method);
+            Metrics.phase(ctx, Metrics.RESPONSE_VALIDATION, start);
+            receivedResponseErrors.ifPresent(errors ->
+                    ValidationHooks.record(ctx, ValidationErrorStats.RESPONSE, receivedResponse.getStatusCode(), errors.getErrors(), receivedResponse.getBody()));
 
             Optional<Validator.ValidationErrors> requestValidationErrors;
             try {
@@ -0,0 +1,102 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import ratpack.func.Action;
+import ratpack.handling.Context;
+import ratpack.http.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the rendered content of the served raml files together with a strong etag and their last modification date.
+ *
+ * An entry is only used as long as the stamps of the files it was rendered from are unchanged.
+ * Conditional requests are answered with 304 Not Modified. Clients accepting gzip get a gzip variant,
+ * which is compressed once per entry.
+ */
+class RenderedFileCache {
+    private final ConcurrentMap<List<Object>, RenderedFile> renderedFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Sends the rendered file for the given key, rendering it first if it isn't cached or one of its files changed.
+     *
+     * @param ctx          the request context
+     * @param key          the cache key, e.g. request path, include flag and content type
+     * @param dependencies the current stamps of the files the content is rendered from
+     * @param contentType  the content type of the response
+     * @param renderer     writes the content
+     */
+    public void send(final Context ctx, final List<Object> key, final Map<Path, FileStamp> dependencies,
+                     final String contentType, final Action<? super Writer> renderer) throws Exception {
+        RenderedFile renderedFile = renderedFiles.get(key);
+        if (renderedFile == null || !renderedFile.dependencies.equals(dependencies)) {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (final Writer writer = new OutputStreamWriter(content, Charsets.UTF_8)) {
+                renderer.execute(writer);
+            }
+            renderedFile = new RenderedFile(dependencies, contentType, content.toByteArray());
+            renderedFiles.put(key, renderedFile);
+        }
+        renderedFile.send(ctx);
+    }
+
+    private static class RenderedFile {
+        private final Map<Path, FileStamp> dependencies;
+        private final String contentType;
+        private final byte[] content;
+        private final String etag;
+        private final Instant lastModified;
+        private volatile byte[] gzipped;
+
+        private RenderedFile(final Map<Path, FileStamp> dependencies, final String contentType, final byte[] content) {
+            this.dependencies = dependencies;
+            this.contentType = contentType;
+            this.content = content;
+            this.etag = "\"" + Hashing.sha256().hashBytes(content) + "\"";
+            this.lastModified = dependencies.values().stream()
+                    .map(stamp -> stamp.getLastModified().toInstant())
+                    .max(Instant::compareTo)
+                    .orElse(Instant.EPOCH);
+        }
+
+        void send(final Context ctx) {
+            final boolean gzip = Gzip.isAccepted(ctx);
+            final String variantEtag = gzip ? Gzip.etag(etag) : etag;
+            final Response response = ctx.getResponse();
+            response.getHeaders()
+                    .set(HttpHeaderNames.ETAG, variantEtag)
+                    .set(HttpHeaderNames.VARY, "Accept, Accept-Encoding")
+                    .setDate(HttpHeaderNames.LAST_MODIFIED, Date.from(lastModified));
+            if (FileSender.isNotModified(ctx, variantEtag, lastModified)) {
+                response.status(304).send();
+            } else if (gzip) {
+                Gzip.send(ctx, contentType, gzipped());
+            } else {
+                response.noCompress().send(contentType, content);
+            }
+        }
+
+        /**
+         * Returns the gzip variant of the content, which is compressed on first use.
+         */
+        private byte[] gzipped() {
+            byte[] compressed = gzipped;
+            if (compressed == null) {
+                compressed = Gzip.compress(content);
+                gzipped = compressed;
+            }
+            return compressed;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package io.vrap;
+
+import org.slf4j.Logger;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Estimates the retained heap size of object graphs.
+ *
+ * The graph is walked via reflection, objects of the jdk are only walked through their public collection api.
+ * Objects already visited by a previous estimate of the same instance are not counted again, so the
+ * estimates of several roots don't overlap. The sizes assume a 64-bit jvm with compressed references.
+ */
+class RetainedSize {
+    private final static int OBJECT_HEADER = 12;
+    private final static int ARRAY_HEADER = 16;
+    private final static int REFERENCE = 4;
+    private final static int COLLECTION_ENTRY = 32;
+
+    private final static ConcurrentMap<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Estimates the size of the objects reachable from the given root which weren't visited before.
+     *
+     * @param root the root object
+     * @return the estimated size in bytes
+     */
+    public long estimate(final Object root) {
+        long size = 0;
+        final Deque<Object> pending = new ArrayDeque<>();
+        push(pending, root);
+
+        while (!pending.isEmpty()) {
+            final Object object = pending.pop();
+            final Class<?> type = object.getClass();
+
+            if (object instanceof String) {
+                size += align(OBJECT_HEADER + 12) + align(ARRAY_HEADER + ((String) object).length());
+            } else if (type.isArray()) {
+                final int length = Array.getLength(object);
+                if (type.getComponentType().isPrimitive()) {
+                    size += align(ARRAY_HEADER + (long) length * primitiveSize(type.getComponentType()));
+                } else {
+                    size += align(ARRAY_HEADER + (long) length * REFERENCE);
+                    for (int i = 0; i < length; i++) {
+                        push(pending, Array.get(object, i));
+                    }
+                }
+            } else if (isJdkType(type)) {
+                size += align(OBJECT_HEADER + 4 * REFERENCE);
+                size += jdkContents(pending, object);
+            } else {
+                long shallowSize = OBJECT_HEADER;
+                for (final Field field : fields(type)) {
+                    if (field.getType().isPrimitive()) {
+                        shallowSize += primitiveSize(field.getType());
+                    } else {
+                        shallowSize += REFERENCE;
+                        try {
+                            push(pending, field.get(object));
+                        } catch (IllegalAccessException e) {
+                            // not accessible, the referenced object isn't counted
+                        }
+                    }
+                }
+                size += align(shallowSize);
+            }
+        }
+        return size;
+    }
+
+    private long jdkContents(final Deque<Object> pending, final Object object) {
+        try {
+            if (object instanceof Map) {
+                final Map<?, ?> map = (Map<?, ?>) object;
+                for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                    push(pending, entry.getKey());
+                    push(pending, entry.getValue());
+                }
+                return (long) map.size() * COLLECTION_ENTRY;
+            } else if (object instanceof Collection) {
+                final Collection<?> collection = (Collection<?>) object;
+                for (final Object element : collection) {
+                    push(pending, element);
+                }
+                return (long) collection.size() * COLLECTION_ENTRY;
+            }
+        } catch (RuntimeException e) {
+            // concurrently modified or unsupported collection, count the shallow size only
+        }
+        return 0;
+    }
+
+    private void push(final Deque<Object> pending, final Object object) {
+        if (object != null && !isShared(object) && visited.add(object)) {
+            pending.push(object);
+        }
+    }
+
+    /**
+     * Returns true for objects which are shared by the whole application and shouldn't be counted.
+     */
+    private static boolean isShared(final Object object) {
+        return object instanceof Class || object instanceof ClassLoader || object instanceof Thread
+                || object instanceof Enum || object instanceof Logger;
+    }
+
+    private static boolean isJdkType(final Class<?> type) {
+        final String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.");
+    }
+
+    private static List<Field> fields(final Class<?> type) {
+        return FIELDS.computeIfAbsent(type, t -> {
+            final List<Field> fields = new ArrayList<>();
+            for (Class<?> c = t; c != null && !isJdkType(c); c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        try {
+                            field.setAccessible(true);
+                            fields.add(field);
+                        } catch (RuntimeException e) {
+                            // inaccessible on newer jvms, ignore this field
+                        }
+                    }
+                }
+            }
+            return fields;
+        });
+    }
+
+    private static int primitiveSize(final Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(final long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,72 @@
+package io.vrap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded lock-free buffer for many producers and a single consumer.
+ *
+ * Producers claim a slot with a compare and set, the consumer takes the elements in the order the slots were claimed.
+ *
+ * @param <T> the element type
+ */
+class RingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public RingBuffer(final int capacity) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Adds an element if the buffer isn't full.
+     *
+     * @param element the element
+     * @return false if the buffer is full
+     */
+    public boolean offer(final T element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.set((int) (claimed % slots.length()), element);
+        return true;
+    }
+
+    /**
+     * Takes up to the given number of elements, must only be called by the consumer thread.
+     *
+     * @param max      the maximum number of elements to take
+     * @param consumer the consumer of the elements
+     * @return the number of elements taken
+     */
+    public int drain(final int max, final Consumer<? super T> consumer) {
+        int drained = 0;
+        while (drained < max) {
+            final int index = (int) (head % slots.length());
+            final T element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.set(index, null);
+            head = head + 1;
+            drained++;
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    /**
+     * Returns true if no slot is claimed.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return head == tail.get();
+    }
+}
@@ -15,6 +15,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * This service provides access to the raml api model.
@@ -23,7 +24,9 @@ class RmfModelRepository implements Service {
     private final static Logger LOG = LoggerFactory.getLogger(RmfModelRepository.class);
 
     private final Path filePath;
-    private final RamlModelResult<Api> ramlModelResult;
+    private final List<RamlDiagnostic> validationResults;
+    private final Api api;
+    private final int errorCount;
 
     RmfModelRepository(final Path filePath, final Boolean strict) {
         this.filePath = filePath;
@@ -47,7 +50,23 @@ class RmfModelRepository implements Service {
                 System.exit(1);
             }
         }
-        this.ramlModelResult = ramlModelResult;
+        this.validationResults = ramlModelResult != null ? ramlModelResult.getValidationResults() : Lists.newArrayList();
+        this.api = ramlModelResult != null ? (Api) ramlModelResult.getRootObject() : null;
+        this.errorCount = validationResults.size() + resourceErrorCount(api);
+    }
+
+    private RmfModelRepository(final Path filePath, final Api api) {
+        this.filePath = filePath;
+        this.validationResults = Lists.newArrayList();
+        this.api = api;
+        this.errorCount = resourceErrorCount(api);
+    }
+
+    private static int resourceErrorCount(final Api api) {
+        if (api == null || api.eResource() == null || api.eResource().getResourceSet() == null) {
+            return 0;
+        }
+        return api.eResource().getResourceSet().getResources().stream().mapToInt(resource -> resource.getErrors().size()).sum();
     }
 
     /**
@@ -80,12 +99,21 @@ class RmfModelRepository implements Service {
 
     @Nonnull
     public List<RamlDiagnostic> getValidationResults() {
-        return ramlModelResult != null ? ramlModelResult.getValidationResults(): Lists.newArrayList();
+        return validationResults;
+    }
+
+    /**
+     * Returns the number of validation results and resource errors of the parsed model.
+     *
+     * @return the number of parse errors
+     */
+    public int getErrorCount() {
+        return errorCount;
     }
 
     @Nullable
     public Api getApi() {
-        return ramlModelResult != null ? (Api)ramlModelResult.getRootObject(): null;
+        return api;
     }
 
     public static RmfModelRepository of(final Path filePath) {
@@ -95,4 +123,24 @@ class RmfModelRepository implements Service {
     public static RmfModelRepository of(final Path filePath, final Boolean strict) {
         return new RmfModelRepository(filePath, strict);
     }
+
+    /**
+     * Loads the model from the given snapshot or parses the raml file if the snapshot is missing or outdated.
+     * A successfully parsed model without validation errors is saved to the snapshot.
+     *
+     * @param filePath the raml file path
+     * @param snapshot the snapshot
+     * @return the model repository
+     */
+    public static RmfModelRepository of(final Path filePath, final RmfModelSnapshot snapshot) {
+        final Optional<Api> snapshotApi = snapshot.load();
+        if (snapshotApi.isPresent()) {
+            return new RmfModelRepository(filePath, snapshotApi.get());
+        }
+        final RmfModelRepository repository = of(filePath);
+        if (repository.getApi() != null && repository.getValidationResults().isEmpty()) {
+            snapshot.save(repository.getApi());
+        }
+        return repository;
+    }
 }
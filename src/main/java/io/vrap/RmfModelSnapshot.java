@@ -0,0 +1,212 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.vrap.rmf.raml.model.modules.Api;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the resolved RMF resource set of a raml file on disk, so that it can be loaded on the next
+ * startup instead of parsing the raml files again.
+ *
+ * The snapshot is keyed by a content hash of the raml file and all of its includes. When the key differs
+ * or the snapshot can't be read, {@link #load()} returns an empty optional and the caller has to parse the model.
+ * When one of the raml files can't be read, there is no key and the snapshot is neither loaded nor saved.
+ */
+class RmfModelSnapshot {
+    private final static Logger LOG = LoggerFactory.getLogger(RmfModelSnapshot.class);
+    private final static int FORMAT_VERSION = 1;
+
+    private final Path snapshotFile;
+    private final Path filePath;
+    private final String key;
+
+    /**
+     * @param snapshotFile the snapshot file
+     * @param filePath     the raml file
+     * @param includes     the files included by the raml file
+     */
+    public RmfModelSnapshot(final Path snapshotFile, final Path filePath, final Collection<Path> includes) {
+        this.snapshotFile = snapshotFile;
+        this.filePath = filePath;
+        this.key = key(FORMAT_VERSION, filePath, includes);
+    }
+
+    /**
+     * Returns the content hash of the given files or null if one of them can't be read.
+     */
+    @Nullable
+    static String key(final int formatVersion, final Path filePath, final Collection<Path> includes) {
+        final SortedSet<Path> files = new TreeSet<>();
+        files.add(filePath.toAbsolutePath().normalize());
+        includes.forEach(include -> files.add(include.toAbsolutePath().normalize()));
+
+        final Hasher hasher = Hashing.sha256().newHasher().putInt(formatVersion);
+        try {
+            for (final Path file : files) {
+                hasher.putString(file.toString(), Charsets.UTF_8).putBytes(Files.readAllBytes(file));
+            }
+        } catch (IOException e) {
+            LOG.warn("Not using snapshot, could not read {}", e.getMessage());
+            return null;
+        }
+        return hasher.hash().toString();
+    }
+
+    @Nullable
+    String getKey() {
+        return key;
+    }
+
+    static int getFormatVersion() {
+        return FORMAT_VERSION;
+    }
+
+    /**
+     * Loads the api from the snapshot file.
+     *
+     * @return the api or empty if there is no valid snapshot for the current raml files
+     */
+    public Optional<Api> load() {
+        if (key == null || !Files.isRegularFile(snapshotFile)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(snapshotFile))))) {
+            if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+                LOG.info("Snapshot {} is outdated", snapshotFile);
+                return Optional.empty();
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                initPackage(in.readUTF());
+            }
+            final ResourceSet resourceSet = new ResourceSetImpl();
+            for (int i = in.readInt(); i > 0; i--) {
+                final Resource resource = new BinaryResourceImpl(URI.createURI(in.readUTF()));
+                final byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                resourceSet.getResources().add(resource);
+                resource.load(new ByteArrayInputStream(content), Collections.emptyMap());
+            }
+            EcoreUtil.resolveAll(resourceSet);
+
+            final Resource apiResource = resourceSet.getResource(fileUri(), false);
+            if (apiResource == null || apiResource.getContents().isEmpty() || !(apiResource.getContents().get(0) instanceof Api)) {
+                LOG.warn("Snapshot {} doesn't contain an api", snapshotFile);
+                return Optional.empty();
+            }
+            LOG.info("Loaded rmf model from snapshot {}", snapshotFile);
+            return Optional.of((Api) apiResource.getContents().get(0));
+        } catch (Exception e) {
+            LOG.warn("Could not load snapshot {}: {}", snapshotFile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Saves the resource set of the given api to the snapshot file.
+     * Failures are logged and otherwise ignored, the snapshot is only an optimization.
+     *
+     * @param api the api to save
+     */
+    public void save(final Api api) {
+        if (key == null) {
+            return;
+        }
+        final ResourceSet resourceSet = api.eResource().getResourceSet();
+        final Set<EPackage> ePackages = new HashSet<>();
+        final Set<String> packages = new LinkedHashSet<>();
+        final Map<String, byte[]> resources = new LinkedHashMap<>();
+
+        try {
+            for (final Resource resource : resourceSet.getResources()) {
+                for (final TreeIterator<EObject> it = resource.getAllContents(); it.hasNext(); ) {
+                    final EPackage ePackage = it.next().eClass().getEPackage();
+                    if (ePackages.add(ePackage)) {
+                        packageClass(ePackage).ifPresent(packages::add);
+                    }
+                }
+                final ByteArrayOutputStream content = new ByteArrayOutputStream();
+                final BinaryResourceImpl.EObjectOutputStream out = new BinaryResourceImpl.EObjectOutputStream(content, Collections.emptyMap());
+                out.saveResource(resource);
+                out.flush();
+                resources.put(resource.getURI().toString(), content.toByteArray());
+            }
+        } catch (Exception e) {
+            LOG.warn("Could not create snapshot {}: {}", snapshotFile, e.getMessage());
+            return;
+        }
+        writeSnapshot(packages, resources);
+    }
+
+    private void writeSnapshot(final Set<String> packages, final Map<String, byte[]> resources) {
+        try {
+            final Path tmpFile = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmpFile))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                out.writeInt(packages.size());
+                for (final String packageClass : packages) {
+                    out.writeUTF(packageClass);
+                }
+                out.writeInt(resources.size());
+                for (final Map.Entry<String, byte[]> resource : resources.entrySet()) {
+                    out.writeUTF(resource.getKey());
+                    out.writeInt(resource.getValue().length);
+                    out.write(resource.getValue());
+                }
+            }
+            Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.info("Saved rmf model snapshot {}", snapshotFile);
+        } catch (IOException e) {
+            LOG.warn("Could not write snapshot {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private URI fileUri() {
+        return URI.createURI(filePath.toAbsolutePath().toUri().toString());
+    }
+
+    /**
+     * Returns the name of the generated package interface, which registers the package on initialization.
+     */
+    private static Optional<String> packageClass(final EPackage ePackage) {
+        return Arrays.stream(ePackage.getClass().getInterfaces())
+                .filter(EPackage.class::isAssignableFrom)
+                .filter(RmfModelSnapshot::hasInstanceField)
+                .map(Class::getName)
+                .findFirst();
+    }
+
+    private static boolean hasInstanceField(final Class<?> packageInterface) {
+        try {
+            packageInterface.getField("eINSTANCE");
+            return true;
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    private static void initPackage(final String packageClass) throws ReflectiveOperationException {
+        Class.forName(packageClass).getField("eINSTANCE").get(null);
+    }
+}
@@ -17,7 +17,6 @@ import ratpack.func.Predicate;
 import ratpack.handling.Context;
 import ratpack.handling.Handler;
 import ratpack.handling.Handlers;
-import ratpack.handling.RequestLogger;
 import ratpack.http.Headers;
 import ratpack.http.Request;
 import ratpack.http.TypedData;
@@ -58,27 +57,28 @@ class RmfRouter {
     }
 
     private List<Handler> createRoutes(final Api api) throws Exception {
-        return api != null ? createRoutes(api, api.getResources()) : Lists.newArrayList();
+        return api != null ? createRoutes(api, api.getResources(), "") : Lists.newArrayList();
     }
 
-    private List<Handler> createRoutes(final Api api, final List<Resource> resources) throws Exception {
+    private List<Handler> createRoutes(final Api api, final List<Resource> resources, final String parentUriTemplate) throws Exception {
         final List<Handler> routes = new ArrayList<>();
 
         for (final Resource resource : resources) {
             final String expand = resource.getRelativeUri().getTemplate();
+            final String uriTemplate = parentUriTemplate + expand;
             final String ratpackPath = RmfRatpackPathMapper.map(expand, resource.getUriParameters());
 
             final Map<Method, Handler> methodHandlers = new HashMap<>();
 
             for (final Method method : resource.getMethods()) {
                 if (method.getBodies().isEmpty()) {
-                    final Route route = new Route(resource, method);
+                    final Route route = new Route(resource, method, uriTemplate);
                     methodHandlers.put(method, route);
                 } else {
                     final Map<String, Handler> contentTypeHandlers = new HashMap<>();
 
                     for (final Body bodyDeclaration : method.getBodies()) {
-                        final Route route = new Route(resource, method);
+                        final Route route = new Route(resource, method, uriTemplate);
                         contentTypeHandlers.put(bodyDeclaration.getContentType(), route);
                     }
                     methodHandlers.put(method, Handlers.chain(ctx2 ->
@@ -95,7 +95,7 @@ class RmfRouter {
                             methodHandlers.entrySet().
                                     forEach(e -> byMethodSpec.named(e.getKey().getMethodName(), () -> e.getValue().handle(ctx3))))
             ));
-            children.addAll(createRoutes(api, resource.getResources()));
+            children.addAll(createRoutes(api, resource.getResources(), uriTemplate));
 
             routes.add(
                     Handlers.prefix(
@@ -146,18 +146,21 @@ class RmfRouter {
         private final static Logger LOG = LoggerFactory.getLogger(Route.class);
         private static final String MODE_HEADER = "X-Vrap-Mode";
 
+        private final TokenIssuer.AccessTokenHandler accessTokenHandler = new TokenIssuer.AccessTokenHandler();
         private final RequestValidationHandler requestValidationHandler = new RequestValidationHandler();
         private final RequestProxyHandler requestProxyHandler = new RequestProxyHandler();
         private final RequestExampleHandler requestExampleHandler = new RequestExampleHandler();
         private final ReceivedResponseValidationHandler receivedResponseValidationHandler = new ReceivedResponseValidationHandler();
         private final ReceivedResponseForwardHandler receivedResponseForwardHandler = new ReceivedResponseForwardHandler();
 
+        private final String uriTemplate;
         private final Handler delegate;
 
-        public Route(final Resource resource, final Method method) {
-            final Registry registry = Registry.builder().add(resource).add(method).build();
+        public Route(final Resource resource, final Method method, final String uriTemplate) {
+            this.uriTemplate = uriTemplate;
+            final Registry registry = Registry.builder().add(resource).add(method).add(new RouteTemplate(uriTemplate)).build();
             final Handler chain = Handlers.chain(
-                    RequestLogger.ncsa(LOG),
+                    accessTokenHandler,
                     requestValidationHandler,
                     Handlers.when(isMode(VrapMode.proxy),
                             Handlers.chain(
@@ -175,7 +178,15 @@ class RmfRouter {
             final String path = ctx.getRequest().getPath();
             LOG.debug("Request path: {}", path);
 
-            delegate.handle(ctx);
+            ServerTiming.routeMatched(ctx);
+            Tracing.routeMatched(ctx, uriTemplate);
+            final Optional<Metrics> metrics = ctx.maybeGet(Metrics.class);
+            if (metrics.isPresent()) {
+                final Metrics.Timer timer = metrics.get().start(ctx, uriTemplate, ctx.getRequest().getMethod().getName(), mode(ctx).name());
+                ctx.insert(Registry.single(Metrics.Timer.class, timer), delegate);
+            } else {
+                delegate.handle(ctx);
+            }
         }
 
         private Predicate<Context> isMode(final VrapMode mode) {
@@ -207,7 +218,10 @@ class RmfRouter {
         private void validateRequest(final Context ctx, final TypedData body) throws Exception {
             final RmfValidator validator = ctx.get(RmfValidator.class);
             final Method method = ctx.get(Method.class);
+            final long start = System.nanoTime();
             final Optional<RmfValidator.ValidationErrors> validationErrors = validator.validateRequest(ctx, body, method);
+            Metrics.phase(ctx, Metrics.REQUEST_VALIDATION, start);
+            validationErrors.ifPresent(errors -> ValidationHooks.record(ctx, ValidationErrorStats.REQUEST, null, errors.getErrors(), body));
             ctx.next(Registry.of(registrySpec -> {
                 registrySpec.add(TypedData.class, body);
                 validationErrors.ifPresent(validationErrors1 -> {
@@ -265,11 +279,14 @@ class RmfRouter {
             final HttpClient httpClient = ctx.get(HttpClient.class);
             final Boolean insecureSSL = ctx.get(VrapApp.VrapOptions.class).getSslVerificationMode() == SSLVerificationMode.insecure;
             final URI proxiedUri = proxiedUri(ctx);
-            LOG.info("Forward to: {}", proxiedUri);
-
-            httpClient.request(proxiedUri, proxyRequest(body, request, insecureSSL))
-                    .then(receivedResponse ->
-                            ctx.next(Registry.builder().add(receivedResponse).add(proxiedUri).build()));
+            WarmUp.info(ctx, LOG, "Forward to: {}", proxiedUri);
+
+            final long start = System.nanoTime();
+            httpClient.request(proxiedUri, proxyRequest(body, request, insecureSSL).append(spec -> Tracing.propagate(ctx, spec.getHeaders())))
+                    .then(receivedResponse -> {
+                        Metrics.phase(ctx, Metrics.UPSTREAM, start);
+                        ctx.next(Registry.builder().add(receivedResponse).add(proxiedUri).build());
+                    });
         }
 
         private URI proxiedUri(final Context ctx) {
@@ -279,7 +296,9 @@ class RmfRouter {
 
             final Request request = ctx.getRequest();
             final String query = request.getQuery();
-            final String boundPath = request.getPath().replaceAll("^rmf/", "") + (!query.isEmpty() ? "?" + query : "");
+            final String apiPrefix = options.getMountPath() + VrapApp.RMF_URI + "/";
+            final String path = request.getPath().startsWith(apiPrefix) ? request.getPath().substring(apiPrefix.length()) : request.getPath();
+            final String boundPath = path + (!query.isEmpty() ? "?" + query : "");
 
             final String ramlBaseUri = StringUtils.stripEnd(api.getBaseUri().getTemplate(), "/");
             final String ramlBaseUriPath = URI.create(ramlBaseUri.replace("{", "%7B").replace("}", "%7D")).getPath().replace("%7B", "{").replace("%7D", "}");
@@ -316,6 +335,8 @@ class RmfRouter {
 
         @Override
         public void handle(Context ctx) throws Exception {
+            final long start = System.nanoTime();
+            ctx.onClose(outcome -> Metrics.phase(ctx, Metrics.FORWARD, start));
             ctx.get(ReceivedResponse.class).forwardTo(ctx.getResponse());
         }
     }
@@ -336,7 +357,11 @@ class RmfRouter {
             final RmfValidator validator = ctx.get(RmfValidator.class);
             final Boolean dryRun = ctx.get(VrapApp.VrapOptions.class).getDryRun();
             final Method method = ctx.get(Method.class);
+            final long start = System.nanoTime();
             final Optional<RmfValidator.ValidationErrors> receivedResponseErrors = validator.validateReceivedResponse(ctx, receivedResponse, method);
+            Metrics.phase(ctx, Metrics.RESPONSE_VALIDATION, start);
+            receivedResponseErrors.ifPresent(errors ->
+                    ValidationHooks.record(ctx, ValidationErrorStats.RESPONSE, receivedResponse.getStatusCode(), errors.getErrors(), receivedResponse.getBody()));
 
             Optional<RmfValidator.ValidationErrors> requestValidationErrors;
             try {
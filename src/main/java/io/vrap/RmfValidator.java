@@ -92,7 +92,7 @@ public class RmfValidator implements Service {
         }
     }
 
-    public static class ValidationError {
+    public static class ValidationError implements ValidationHooks.Error {
         private final ValidationKind kind;
         private final String context;
         private final String message;
@@ -103,14 +103,17 @@ public class RmfValidator implements Service {
             this.message = message;
         }
 
+        @Override
         public ValidationKind getKind() {
             return kind;
         }
 
+        @Override
         public String getContext() {
             return context;
         }
 
+        @Override
         public String getMessage() {
             return message;
         }
@@ -137,7 +140,7 @@ public class RmfValidator implements Service {
         final List<ValidationError> errors = new ArrayList<>();
 
         if (disableValidation(context.getRequest().getHeaders(), ValidationFlag.request)) {
-            return wrapAndLogErrors(errors);
+            return wrapAndLogErrors(context, errors);
         }
 
         final Api api = context.get(RmfModelRepository.class).getApi();
@@ -157,15 +160,17 @@ public class RmfValidator implements Service {
                 .map(bodyTypeDecl -> validateBody(body.getText(), bodyTypeDecl, ValidationKind.body, "request", options.getStrictValidation()))
                 .orElse(Collections.emptyList()));
 
-        return wrapAndLogErrors(errors);
+        return wrapAndLogErrors(context, errors);
     }
 
-    private Optional<ValidationErrors> wrapAndLogErrors(List<ValidationError> errors) {
+    private Optional<ValidationErrors> wrapAndLogErrors(final Context context, List<ValidationError> errors) {
         if (errors.isEmpty()) {
             return Optional.empty();
         } else {
             final ValidationErrors validationErrors = new ValidationErrors(errors);
-            LOG.info("Request has errors: {}", validationErrors);
+            if (!context.maybeGet(ValidationEventLog.class).isPresent()) {
+                WarmUp.info(context, LOG, "Request has errors: {}", validationErrors);
+            }
 
             return Optional.of(validationErrors);
         }
@@ -209,7 +214,9 @@ public class RmfValidator implements Service {
             return Optional.empty();
         } else {
             final ValidationErrors validationErrors = new ValidationErrors(errors, receivedResponse.getStatusCode(), bodyValue);
-            LOG.info("Received response has errors: {}", validationErrors);
+            if (!ctx.maybeGet(ValidationEventLog.class).isPresent()) {
+                WarmUp.info(ctx, LOG, "Received response has errors: {}", validationErrors);
+            }
 
             return Optional.of(validationErrors);
         }
@@ -0,0 +1,21 @@
+package io.vrap;
+
+/**
+ * The uri template of the resource a route was created for, registered on the context of the route.
+ */
+class RouteTemplate {
+    private final String uriTemplate;
+
+    public RouteTemplate(final String uriTemplate) {
+        this.uriTemplate = uriTemplate;
+    }
+
+    public String getUriTemplate() {
+        return uriTemplate;
+    }
+
+    @Override
+    public String toString() {
+        return uriTemplate;
+    }
+}
@@ -0,0 +1,76 @@
+package io.vrap;
+
+import ratpack.handling.Context;
+import ratpack.http.MutableHeaders;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the latency breakdown of a request and adds it to the response
+ * as Server-Timing and X-Vrap-Timing header.
+ *
+ * It's only added to the request registry if enabled, so the routes only look it up otherwise.
+ */
+class ServerTiming {
+    public final static String ROUTE = "route";
+    public final static String TOTAL = "total";
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Starts timing the request, must be the first handler of the server.
+     *
+     * @param ctx the request context
+     */
+    public static void start(final Context ctx) {
+        ctx.getRequest().add(new ServerTiming());
+        ctx.next();
+    }
+
+    /**
+     * Records the route match and adds the headers before the response of the route is sent.
+     *
+     * @param ctx the request context
+     */
+    public static void routeMatched(final Context ctx) {
+        final Optional<ServerTiming> serverTiming = ctx.getRequest().maybeGet(ServerTiming.class);
+        if (serverTiming.isPresent()) {
+            final ServerTiming timing = serverTiming.get();
+            timing.add(ROUTE, System.nanoTime() - timing.startNanos);
+            ctx.getResponse().beforeSend(response -> timing.write(response.getHeaders()));
+        }
+    }
+
+    /**
+     * Adds the duration of a phase if the request is timed.
+     *
+     * @param ctx           the request context
+     * @param phase         the phase
+     * @param durationNanos the duration of the phase
+     */
+    public static void phase(final Context ctx, final String phase, final long durationNanos) {
+        ctx.getRequest().maybeGet(ServerTiming.class).ifPresent(timing -> timing.add(phase, durationNanos));
+    }
+
+    private void add(final String phase, final long durationNanos) {
+        phases.merge(phase, durationNanos, Long::sum);
+    }
+
+    private void write(final MutableHeaders headers) {
+        final StringBuilder serverTiming = new StringBuilder();
+        final StringBuilder vrapTiming = new StringBuilder();
+        phases.put(TOTAL, System.nanoTime() - startNanos);
+        phases.forEach((phase, durationNanos) -> {
+            final String millis = String.format(Locale.ROOT, "%.3f", durationNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+            serverTiming.append(serverTiming.length() > 0 ? ", " : "").append(phase).append(";dur=").append(millis);
+            vrapTiming.append(vrapTiming.length() > 0 ? ", " : "").append(phase).append('=').append(millis).append("ms");
+        });
+        headers.set("Server-Timing", serverTiming);
+        headers.set("X-Vrap-Timing", vrapTiming);
+    }
+}
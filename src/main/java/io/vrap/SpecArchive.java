@@ -0,0 +1,190 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import ratpack.exec.Blocking;
+import ratpack.handling.Context;
+import ratpack.http.Response;
+import ratpack.stream.Streams;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Serves the raml file and all of its includes as one zip archive.
+ *
+ * The archive is built while it is streamed with chunked transfer encoding, one chunk per file.
+ * The finished archive is cached by a hash of the versions of its files, so it is only built again after a file changed.
+ * With the {@link QueryParams#REWRITE} query parameter the base uris of the json files are replaced like in the api browser.
+ */
+class SpecArchive {
+    private final static String CONTENT_TYPE = "application/zip";
+
+    private final Path filePath;
+    private final List<Path> files;
+    private final Path baseDir;
+    private final ConcurrentMap<Boolean, Archive> archives = new ConcurrentHashMap<>();
+
+    /**
+     * @param filePath the raml file
+     * @param files    the raml file and all of its includes
+     */
+    public SpecArchive(final Path filePath, final List<Path> files) {
+        this.filePath = filePath;
+        this.files = files;
+        this.baseDir = commonDir(files);
+    }
+
+    private static Path commonDir(final List<Path> files) {
+        Path dir = files.get(0).toAbsolutePath().normalize().getParent();
+        for (final Path file : files) {
+            while (!file.toAbsolutePath().normalize().startsWith(dir)) {
+                dir = dir.getParent();
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * Sends the archive, from the cache if none of its files changed.
+     *
+     * @param ctx     the request context
+     * @param apiPath the api path the base uris are replaced with
+     */
+    public void send(final Context ctx, final String apiPath) throws Exception {
+        final boolean rewrite = QueryParams.rewriteBaseUri(ctx) && ctx.maybeGet(BaseUriReplacer.class).isPresent();
+        final Hasher hasher = Hashing.sha256().newHasher().putBoolean(rewrite);
+        Instant lastModified = Instant.EPOCH;
+        for (final Path file : files) {
+            final FileStamp stamp = FileStamp.of(file);
+            hasher.putString(file.toString(), Charsets.UTF_8).putLong(stamp.getLastModified().toMillis()).putLong(stamp.getSize());
+            lastModified = lastModified.isAfter(stamp.getLastModified().toInstant()) ? lastModified : stamp.getLastModified().toInstant();
+        }
+        final String etag = "\"" + hasher.hash() + "\"";
+
+        final Response response = ctx.getResponse();
+        response.noCompress();
+        response.getHeaders()
+                .set(HttpHeaderNames.ETAG, etag)
+                .setDate(HttpHeaderNames.LAST_MODIFIED, Date.from(lastModified))
+                .set(HttpHeaderNames.CONTENT_DISPOSITION, "attachment; filename=\"" + archiveName() + "\"");
+        if (FileSender.isNotModified(ctx, etag, lastModified)) {
+            response.status(304).send();
+            return;
+        }
+        final Archive cached = archives.get(rewrite);
+        if (cached != null && cached.etag.equals(etag)) {
+            response.send(CONTENT_TYPE, cached.content);
+            return;
+        }
+
+        final ArchiveWriter writer = new ArchiveWriter(ctx, apiPath, rewrite, etag);
+        response.contentType(CONTENT_TYPE);
+        response.sendStream(Streams.flatYield(request -> Blocking.get(writer::next)).map(Unpooled::wrappedBuffer));
+    }
+
+    private String archiveName() {
+        final String fileName = filePath.getFileName().toString();
+        final int extension = fileName.lastIndexOf('.');
+        return (extension > 0 ? fileName.substring(0, extension) : fileName) + ".zip";
+    }
+
+    private static class Archive {
+        private final String etag;
+        private final byte[] content;
+
+        private Archive(final String etag, final byte[] content) {
+            this.etag = etag;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Writes the archive one file at a time and caches it when it's complete.
+     */
+    private class ArchiveWriter {
+        private final Context ctx;
+        private final String apiPath;
+        private final boolean rewrite;
+        private final String etag;
+        private final Iterator<Path> pending = files.iterator();
+        private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        private final ZipOutputStream zip = new ZipOutputStream(chunk);
+        private boolean finished;
+
+        ArchiveWriter(final Context ctx, final String apiPath, final boolean rewrite, final String etag) {
+            this.ctx = ctx;
+            this.apiPath = apiPath;
+            this.rewrite = rewrite;
+            this.etag = etag;
+        }
+
+        /**
+         * Returns the next chunk of the archive or null after the last one.
+         */
+        byte[] next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            if (pending.hasNext()) {
+                final Path file = pending.next();
+                final ZipEntry entry = new ZipEntry(baseDir.relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/'));
+                entry.setTime(Files.getLastModifiedTime(file).toMillis());
+                zip.putNextEntry(entry);
+                if (rewrite && file.getFileName().toString().endsWith(".json")) {
+                    ctx.get(BaseUriReplacer.class).preprocess(ctx, file, apiPath, new OutputStreamWriter(new EntryOutputStream(zip), Charsets.UTF_8));
+                } else {
+                    Files.copy(file, zip);
+                }
+                zip.closeEntry();
+            } else {
+                zip.finish();
+                finished = true;
+            }
+            final byte[] bytes = chunk.toByteArray();
+            chunk.reset();
+            archive.write(bytes);
+            if (finished) {
+                archives.put(rewrite, new Archive(etag, archive.toByteArray()));
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Writes to the current entry of a zip, closing it only flushes so that the zip stays open.
+     */
+    private static class EntryOutputStream extends FilterOutputStream {
+
+        EntryOutputStream(final OutputStream zip) {
+            super(zip);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.vrap;
+
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.handling.Handler;
+import ratpack.service.Service;
+import ratpack.service.StartEvent;
+import ratpack.service.StopEvent;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Provides the currently loaded {@link ApiModels} and reloads them in the background when
+ * the raml file or one of its includes changes.
+ *
+ * Each request is bound to the models that were current when it arrived, so in-flight requests
+ * finish on the old models while new requests already use the reloaded ones.
+ * When a reload fails, a parser produces no api or reports more errors than for the current models,
+ * the last good models are kept.
+ */
+class SpecReloader implements Service {
+    private final static Logger LOG = LoggerFactory.getLogger(SpecReloader.class);
+    private final static long DEBOUNCE_MILLIS = 500;
+
+    private final VrapApp.VrapOptions options;
+    private final Path filePath;
+    private final AtomicReference<ApiModels> models;
+    private final Set<Path> watchedDirs = new HashSet<>();
+    private volatile Set<Path> watchedFiles;
+    private volatile IncludeGraph includes;
+
+    private WatchService watchService;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> pendingReload;
+
+    public SpecReloader(final VrapApp.VrapOptions options, final Path filePath, final ApiModels models, final IncludeGraph includes) {
+        this.options = options;
+        this.filePath = filePath;
+        this.models = new AtomicReference<>(models);
+        this.includes = includes;
+    }
+
+    /**
+     * Returns the options of the api.
+     *
+     * @return the api options
+     */
+    public VrapApp.VrapOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Returns the currently loaded models.
+     *
+     * @return the current models
+     */
+    public ApiModels get() {
+        return models.get();
+    }
+
+    /**
+     * Returns a handler which delegates to the handler for the current models and registers their repositories.
+     *
+     * @param handler creates the handler for the given models
+     * @return the handler
+     */
+    public Handler handler(final Function<ApiModels, Handler> handler) {
+        return ctx -> {
+            final ApiModels current = models.get();
+            ctx.insert(current.getRegistry(), handler.apply(current));
+        };
+    }
+
+    @Override
+    public void onStart(final StartEvent event) throws Exception {
+        if (!options.getWatch()) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "vrap-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watch(models.get().getFiles());
+
+        final Thread watcher = new Thread(this::awaitChanges, "vrap-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        LOG.info("Watching {} files for changes", watchedFiles.size());
+    }
+
+    @Override
+    public void onStop(final StopEvent event) throws Exception {
+        if (watchService != null) {
+            watchService.close();
+            executor.shutdownNow();
+        }
+    }
+
+    private void watch(final List<Path> files) throws IOException {
+        watchedFiles = files.stream().map(file -> file.toAbsolutePath().normalize()).collect(Collectors.toSet());
+        for (final Path file : watchedFiles) {
+            final Path dir = file.getParent();
+            if (watchedDirs.add(dir)) {
+                dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            }
+        }
+    }
+
+    private void awaitChanges() {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                final Path dir = (Path) key.watchable();
+                boolean changed = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        changed = true;
+                        continue;
+                    }
+                    final Path file = dir.resolve((Path) event.context());
+                    if (watchedFiles.contains(file)) {
+                        LOG.debug("{} changed, included by {}", file, includes.getIncluders(file));
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    scheduleReload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            LOG.debug("Stopped watching for changes");
+        }
+    }
+
+    /**
+     * Schedules a reload, postponing an already scheduled one so that a burst of changes results in a single reload.
+     */
+    private synchronized void scheduleReload() {
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = executor.schedule(this::reload, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reloads the models and replaces the current ones unless the reloaded models have problems.
+     *
+     * @return true iff. the current models were replaced
+     */
+    boolean reload() {
+        LOG.info("Reloading {}", filePath);
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            final IncludeGraph reloadedIncludes = new IncludeCollector(filePath).collect();
+            final List<Path> files = reloadedIncludes.getFiles();
+            final ApiModels reloaded = ApiModels.load(options, filePath, files);
+            final List<String> problems = reloaded.getReloadProblems(options, models.get());
+            if (!problems.isEmpty()) {
+                LOG.error("Reloading {} failed, keeping the last good model: {}", filePath, String.join(", ", problems));
+                return false;
+            }
+            models.set(reloaded);
+            includes = reloadedIncludes;
+            if (watchService != null) {
+                watch(files);
+            }
+            LOG.info("Reloaded {} in {}", filePath, stopwatch);
+            return true;
+        } catch (Exception e) {
+            LOG.error("Reloading {} failed, keeping the last good model", filePath, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package io.vrap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import ratpack.exec.Promise;
+import ratpack.func.Factory;
+import ratpack.handling.Context;
+import ratpack.http.Headers;
+import ratpack.http.MediaType;
+import ratpack.http.Response;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the access tokens of client credentials grants proxied by the {@link AuthRouter}.
+ *
+ * Tokens are keyed by token uri, client id, a hash of the client secret, grant type and scope and are served
+ * until shortly before they expire, with the expires_in of the response reduced to the remaining lifetime.
+ * Concurrent requests for a missing or expired token share a single request to the token uri.
+ * Only client credentials grants are cached, as the tokens of the other grants also depend on the user.
+ */
+class TokenCache {
+    private final static ObjectMapper MAPPER = new ObjectMapper();
+    private final static String CLIENT_CREDENTIALS = "client_credentials";
+    private final static Duration MAX_EXPIRY_MARGIN = Duration.ofSeconds(60);
+
+    private final Clock clock;
+    private final ConcurrentMap<Key, CachedToken> tokens = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, CompletableFuture<TokenResponse>> refreshes = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public TokenCache() {
+        this(Clock.systemUTC());
+    }
+
+    TokenCache(final Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cache key of a token request or empty if the request isn't cacheable.
+     *
+     * @param authUri the token uri
+     * @param body    the form body of the token request
+     * @param headers the headers of the token request
+     * @return the optional cache key
+     */
+    public static Optional<Key> key(final String authUri, final ByteBuf body, final Headers headers) {
+        if (!CLIENT_CREDENTIALS.equals(FormScanner.value(body, "grant_type"))) {
+            return Optional.empty();
+        }
+        String clientId = FormScanner.value(body, "client_id");
+        String clientSecret = FormScanner.value(body, "client_secret");
+        final String authorization = headers.get(HttpHeaderNames.AUTHORIZATION);
+        if (clientId == null && authorization != null && authorization.regionMatches(true, 0, "Basic ", 0, 6)) {
+            final String credentials;
+            try {
+                credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()), Charsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+            final int separator = credentials.indexOf(':');
+            if (separator > 0) {
+                clientId = credentials.substring(0, separator);
+                clientSecret = credentials.substring(separator + 1);
+            }
+        }
+        if (clientId == null || clientSecret == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Key(authUri, clientId, Hashing.sha256().hashString(clientSecret, Charsets.UTF_8).toString(),
+                CLIENT_CREDENTIALS, Optional.ofNullable(FormScanner.value(body, "scope")).orElse("")));
+    }
+
+    /**
+     * Returns the cached token for the given key or fetches it, sharing a fetch already in flight.
+     *
+     * @param key   the cache key
+     * @param fetch fetches the token from the token uri
+     * @return the token response
+     */
+    public Promise<TokenResponse> get(final Key key, final Factory<Promise<TokenResponse>> fetch) throws Exception {
+        final Instant now = clock.instant();
+        final CachedToken cached = tokens.get(key);
+        if (cached != null && now.isBefore(cached.refreshAt)) {
+            hits.increment();
+            return Promise.value(cached.response(now));
+        }
+        final CompletableFuture<TokenResponse> refresh = new CompletableFuture<>();
+        final CompletableFuture<TokenResponse> inFlight = refreshes.putIfAbsent(key, refresh);
+        if (inFlight != null) {
+            coalesced.increment();
+            return Promise.async(downstream -> downstream.accept(inFlight));
+        }
+        misses.increment();
+        final Promise<TokenResponse> fetched;
+        try {
+            fetched = fetch.create();
+        } catch (Exception e) {
+            refreshes.remove(key, refresh);
+            refresh.completeExceptionally(e);
+            throw e;
+        }
+        return fetched.wiretap(result -> {
+            refreshes.remove(key, refresh);
+            if (result.isError()) {
+                refresh.completeExceptionally(result.getThrowable());
+                return;
+            }
+            final TokenResponse response = result.getValue();
+            final CachedToken token = CachedToken.of(response, clock.instant());
+            if (token != null) {
+                tokens.put(key, token);
+            } else {
+                tokens.remove(key);
+            }
+            refresh.complete(response);
+        });
+    }
+
+    /**
+     * Returns the hit and miss counts of the cache.
+     *
+     * @return the statistics
+     */
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", tokens.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        return stats;
+    }
+
+    static class Key {
+        private final String authUri;
+        private final String clientId;
+        private final String secretHash;
+        private final String grantType;
+        private final String scope;
+
+        Key(final String authUri, final String clientId, final String secretHash, final String grantType, final String scope) {
+            this.authUri = authUri;
+            this.clientId = clientId;
+            this.secretHash = secretHash;
+            this.grantType = grantType;
+            this.scope = scope;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return authUri.equals(key.authUri) && clientId.equals(key.clientId) && secretHash.equals(key.secretHash)
+                    && grantType.equals(key.grantType) && scope.equals(key.scope);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(authUri, clientId, secretHash, grantType, scope);
+        }
+    }
+
+    /**
+     * The response of a token uri.
+     */
+    static class TokenResponse {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        private final boolean cached;
+
+        TokenResponse(final int status, final String contentType, final byte[] body) {
+            this(status, contentType, body, false);
+        }
+
+        private TokenResponse(final int status, final String contentType, final byte[] body, final boolean cached) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+            this.cached = cached;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public void send(final Context ctx) {
+            final Response response = ctx.getResponse();
+            response.getHeaders()
+                    .set(HttpHeaderNames.CACHE_CONTROL, "no-store")
+                    .set(HttpHeaderNames.PRAGMA, "no-cache")
+                    .set("Via", "Vrap OAuth 2.0 proxy")
+                    .set("X-Vrap-Token-Cache", cached ? "hit" : "miss");
+            response.status(status).send(Optional.ofNullable(contentType).orElse(MediaType.APPLICATION_JSON), body);
+        }
+    }
+
+    private static class CachedToken {
+        private final TokenResponse response;
+        private final ObjectNode token;
+        private final Instant expiresAt;
+        private final Instant refreshAt;
+
+        private CachedToken(final TokenResponse response, final ObjectNode token, final Instant expiresAt, final Instant refreshAt) {
+            this.response = response;
+            this.token = token;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        /**
+         * Returns the cached token or null if the response isn't a cacheable token.
+         */
+        static CachedToken of(final TokenResponse response, final Instant now) {
+            if (response.status != 200) {
+                return null;
+            }
+            try {
+                final JsonNode token = MAPPER.readTree(response.body);
+                if (token == null || !token.isObject() || !token.path("expires_in").canConvertToLong() || token.path("expires_in").asLong() <= 0) {
+                    return null;
+                }
+                final Duration expiresIn = Duration.ofSeconds(token.path("expires_in").asLong());
+                final Duration margin = expiresIn.dividedBy(10).compareTo(MAX_EXPIRY_MARGIN) < 0 ? expiresIn.dividedBy(10) : MAX_EXPIRY_MARGIN;
+                return new CachedToken(response, (ObjectNode) token, now.plus(expiresIn), now.plus(expiresIn).minus(margin));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        TokenResponse response(final Instant now) throws IOException {
+            final ObjectNode remaining = token.deepCopy();
+            remaining.put("expires_in", Duration.between(now, expiresAt).getSeconds());
+            return new TokenResponse(response.status, response.contentType, MAPPER.writeValueAsBytes(remaining), true);
+        }
+    }
+}
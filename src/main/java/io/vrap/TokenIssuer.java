@@ -0,0 +1,204 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import ratpack.form.Form;
+import ratpack.handling.Context;
+import ratpack.handling.Handler;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ratpack.jackson.Jackson.json;
+
+/**
+ * Issues opaque bearer tokens in place of the access token uri of the OAuth 2.0 security schemes,
+ * so that authenticated traffic can be sent through vrap without an identity provider.
+ *
+ * Issued tokens are held in memory until they expire and are checked by the {@link AccessTokenHandler} of the routes.
+ * A token is issued for a security scheme of the api served under a mount path and is only accepted by the routes
+ * of that api. If client credentials are configured, only clients authenticating with one of them get a token,
+ * otherwise every client does.
+ */
+class TokenIssuer {
+    private final static SecureRandom RANDOM = new SecureRandom();
+    private final static Splitter SCOPE_SPLITTER = Splitter.on(' ').omitEmptyStrings().trimResults();
+    private final static long PURGE_INTERVAL = 1024;
+
+    private final Duration ttl;
+    private final Set<String> scopes;
+    private final Map<String, String> clients;
+    private final Clock clock;
+    private final ConcurrentMap<String, IssuedToken> tokens = new ConcurrentHashMap<>();
+    private final AtomicLong issued = new AtomicLong();
+
+    /**
+     * @param ttl     the lifetime of the issued tokens
+     * @param scopes  the scopes which may be granted, if empty the scopes of the security scheme
+     * @param clients the secrets of the clients by client id, if empty any client gets a token
+     */
+    public TokenIssuer(final Duration ttl, final Set<String> scopes, final Map<String, String> clients) {
+        this(ttl, scopes, clients, Clock.systemUTC());
+    }
+
+    TokenIssuer(final Duration ttl, final Set<String> scopes, final Map<String, String> clients, final Clock clock) {
+        this.ttl = ttl;
+        this.scopes = ImmutableSet.copyOf(scopes);
+        this.clients = ImmutableMap.copyOf(clients);
+        this.clock = clock;
+    }
+
+    /**
+     * Answers a token request with a new token or an OAuth 2.0 error response.
+     *
+     * @param ctx          the request context
+     * @param form         the form of the token request
+     * @param scheme       the name of the security scheme
+     * @param schemeScopes the scopes declared by the security scheme
+     */
+    public void issue(final Context ctx, final Form form, final String scheme, final List<String> schemeScopes) {
+        ctx.getResponse().getHeaders()
+                .set(HttpHeaderNames.CACHE_CONTROL, "no-store")
+                .set(HttpHeaderNames.PRAGMA, "no-cache");
+        if (form.get("grant_type") == null) {
+            ctx.getResponse().status(400);
+            ctx.render(json(ImmutableMap.of("error", "invalid_request", "error_description", "Missing grant_type")));
+            return;
+        }
+        if (!isAuthenticated(form, ctx.getRequest().getHeaders().get(HttpHeaderNames.AUTHORIZATION))) {
+            ctx.getResponse().status(401);
+            ctx.render(json(ImmutableMap.of("error", "invalid_client")));
+            return;
+        }
+        final Set<String> grantable = scopes.isEmpty() ? ImmutableSet.copyOf(schemeScopes) : scopes;
+        final String requested = form.get("scope");
+        final Set<String> granted = requested != null ? ImmutableSet.copyOf(SCOPE_SPLITTER.split(requested)) : grantable;
+        if (!grantable.isEmpty() && !grantable.containsAll(granted)) {
+            ctx.getResponse().status(400);
+            ctx.render(json(ImmutableMap.of("error", "invalid_scope")));
+            return;
+        }
+
+        final Map<String, Object> response = new LinkedHashMap<>();
+        response.put("access_token", issue(ctx.get(VrapApp.VrapOptions.class).getMountPath(), scheme, granted));
+        response.put("token_type", "Bearer");
+        response.put("expires_in", ttl.getSeconds());
+        response.put("scope", String.join(" ", granted));
+        ctx.render(json(response));
+    }
+
+    /**
+     * Returns true iff. no client credentials are configured or the request authenticates with one of them,
+     * either with basic authorization or with the client_id and client_secret form parameters.
+     */
+    boolean isAuthenticated(final Form form, final String authorization) {
+        if (clients.isEmpty()) {
+            return true;
+        }
+        String clientId = form.get("client_id");
+        String clientSecret = form.get("client_secret");
+        if (authorization != null && authorization.regionMatches(true, 0, "Basic ", 0, 6)) {
+            try {
+                final String credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()), Charsets.UTF_8);
+                final int separator = credentials.indexOf(':');
+                if (separator > 0) {
+                    clientId = credentials.substring(0, separator);
+                    clientSecret = credentials.substring(separator + 1);
+                }
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        final String secret = clientId != null ? clients.get(clientId) : null;
+        return secret != null && clientSecret != null
+                && MessageDigest.isEqual(secret.getBytes(Charsets.UTF_8), clientSecret.getBytes(Charsets.UTF_8));
+    }
+
+    String issue(final String mountPath, final String scheme, final Set<String> granted) {
+        final byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        final String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        final Instant now = clock.instant();
+        tokens.put(token, new IssuedToken(mountPath, scheme, granted, now.plus(ttl)));
+        if (issued.incrementAndGet() % PURGE_INTERVAL == 0) {
+            tokens.values().removeIf(issuedToken -> !now.isBefore(issuedToken.expiresAt));
+        }
+        return token;
+    }
+
+    /**
+     * Returns the issued token of an authorization header value if it hasn't expired and was issued for the api
+     * served under the given mount path.
+     *
+     * @param authorization the authorization header value
+     * @param mountPath     the mount path of the api
+     * @return the optional issued token
+     */
+    public Optional<IssuedToken> validate(final String authorization, final String mountPath) {
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return Optional.empty();
+        }
+        final String token = authorization.substring(7).trim();
+        final IssuedToken issuedToken = tokens.get(token);
+        if (issuedToken == null || !issuedToken.mountPath.equals(mountPath)) {
+            return Optional.empty();
+        }
+        if (!clock.instant().isBefore(issuedToken.expiresAt)) {
+            tokens.remove(token, issuedToken);
+            return Optional.empty();
+        }
+        return Optional.of(issuedToken);
+    }
+
+    static class IssuedToken {
+        private final String mountPath;
+        private final String scheme;
+        private final Set<String> scopes;
+        private final Instant expiresAt;
+
+        private IssuedToken(final String mountPath, final String scheme, final Set<String> scopes, final Instant expiresAt) {
+            this.mountPath = mountPath;
+            this.scheme = scheme;
+            this.scopes = scopes;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getScheme() {
+            return scheme;
+        }
+
+        public Set<String> getScopes() {
+            return scopes;
+        }
+    }
+
+    /**
+     * Rejects requests without a valid bearer token issued for the current api if a {@link TokenIssuer} is registered.
+     * Otherwise the execution is passed to the next handler.
+     */
+    static class AccessTokenHandler implements Handler {
+
+        @Override
+        public void handle(final Context ctx) throws Exception {
+            final Optional<TokenIssuer> issuer = ctx.maybeGet(TokenIssuer.class);
+            if (!issuer.isPresent() || issuer.get().validate(ctx.getRequest().getHeaders().get(HttpHeaderNames.AUTHORIZATION),
+                    ctx.get(VrapApp.VrapOptions.class).getMountPath()).isPresent()) {
+                ctx.next();
+                return;
+            }
+            ctx.getResponse().getHeaders().set(HttpHeaderNames.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            ctx.getResponse().status(401);
+            ctx.render(json(ImmutableMap.of("statusCode", 401, "error", "invalid_token", "message", "Missing, unknown or expired access token")));
+        }
+    }
+}
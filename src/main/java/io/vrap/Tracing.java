@@ -0,0 +1,411 @@
+package io.vrap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.handling.Context;
+import ratpack.handling.Handler;
+import ratpack.handling.RequestOutcome;
+import ratpack.http.MutableHeaders;
+import ratpack.service.Service;
+import ratpack.service.StopEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Traces the requests of the server with W3C trace context and exports the spans as OTLP json.
+ *
+ * A request is traced if its traceparent header is sampled or, without a valid traceparent, by the
+ * configured sample ratio. The traceparent header of unsampled requests is forwarded unchanged, unsampled
+ * requests without one get a new unsampled traceparent for the upstream request. The spans are put into a lock-free ring buffer and exported in batches by a single
+ * writer thread, either as one json line per batch to a file or posted to an OTLP/HTTP endpoint.
+ */
+class Tracing implements Handler, Service {
+    private final static Logger LOG = LoggerFactory.getLogger(Tracing.class);
+    private final static ObjectMapper MAPPER = new ObjectMapper();
+
+    public final static String TRACEPARENT = "traceparent";
+
+    private final static int CAPACITY = 8192;
+    private final static int BATCH_SIZE = 512;
+    private final static long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final static int TIMEOUT_MILLIS = 5000;
+
+    private final static int KIND_INTERNAL = 1;
+    private final static int KIND_SERVER = 2;
+    private final static int KIND_CLIENT = 3;
+
+    private final double sampleRatio;
+    private final Path file;
+    private final URI endpoint;
+
+    private final RingBuffer<Span> ring = new RingBuffer<>(CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+    private final Thread writer;
+    private OutputStream out;
+
+    /**
+     * @param sampleRatio the ratio of requests without sampled traceparent to trace
+     * @param file        the file to append the batches to or null
+     * @param endpoint    the OTLP/HTTP traces endpoint to post the batches to or null
+     */
+    public Tracing(final double sampleRatio, final Path file, final URI endpoint) throws IOException {
+        this.sampleRatio = sampleRatio;
+        this.file = file;
+        this.endpoint = endpoint;
+        if (file != null) {
+            out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        writer = new Thread(this::write, "vrap-tracing");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void handle(final Context ctx) throws Exception {
+        final TraceParent parent = TraceParent.parse(ctx.getRequest().getHeaders().get(TRACEPARENT));
+        final boolean sampled = parent != null ? parent.sampled : sampleRatio > 0 && ThreadLocalRandom.current().nextDouble() < sampleRatio;
+        if (sampled) {
+            final Trace trace = new Trace(this, parent != null ? parent.traceId : randomId(2), parent != null ? parent.spanId : null);
+            ctx.getRequest().add(trace);
+            ctx.onClose(outcome -> trace.end(outcome));
+        } else if (parent == null) {
+            ctx.getRequest().add(new TraceParent(randomId(2), randomId(1), false));
+        }
+        ctx.next();
+    }
+
+    /**
+     * Names the request span after the matched route, if the request is traced.
+     *
+     * @param ctx   the request context
+     * @param route the route template
+     */
+    public static void routeMatched(final Context ctx, final String route) {
+        ctx.getRequest().maybeGet(Trace.class).ifPresent(trace -> trace.route = route);
+    }
+
+    /**
+     * Sets the traceparent header of the upstream request, if the request is traced or is unsampled
+     * without traceparent.
+     *
+     * @param ctx     the request context
+     * @param headers the headers of the upstream request
+     */
+    public static void propagate(final Context ctx, final MutableHeaders headers) {
+        final Optional<Trace> trace = ctx.getRequest().maybeGet(Trace.class);
+        if (trace.isPresent()) {
+            headers.set(TRACEPARENT, trace.get().upstreamTraceParent());
+        } else {
+            ctx.getRequest().maybeGet(TraceParent.class).ifPresent(parent -> headers.set(TRACEPARENT, parent.toHeader()));
+        }
+    }
+
+    /**
+     * Records a phase as child span of the request span, if the request is traced.
+     *
+     * @param ctx           the request context
+     * @param phase         the phase
+     * @param startNanos    the {@link System#nanoTime()} the phase started at
+     * @param durationNanos the duration of the phase
+     */
+    public static void phase(final Context ctx, final String phase, final long startNanos, final long durationNanos) {
+        ctx.getRequest().maybeGet(Trace.class).ifPresent(trace -> trace.phase(phase, startNanos, durationNanos));
+    }
+
+    void offer(final Span span) {
+        if (!ring.offer(span)) {
+            dropped.increment();
+        }
+    }
+
+    private void write() {
+        final List<Span> batch = new ArrayList<>(BATCH_SIZE);
+        long lastExport = System.nanoTime();
+        while (running || !ring.isEmpty()) {
+            final int spans = ring.drain(BATCH_SIZE - batch.size(), batch::add);
+            if (batch.isEmpty() || batch.size() >= BATCH_SIZE || System.nanoTime() - lastExport >= FLUSH_INTERVAL_NANOS) {
+                export(batch);
+                lastExport = System.nanoTime();
+            }
+            if (spans == 0) {
+                if (dropped.sum() > 0) {
+                    LOG.warn("Dropped {} spans", dropped.sumThenReset());
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        export(batch);
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOG.error("Could not close {}", file, e);
+            }
+        }
+    }
+
+    private void export(final List<Span> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            final byte[] request = MAPPER.writeValueAsBytes(exportRequest(batch));
+            if (out != null) {
+                out.write(request);
+                out.write('\n');
+                out.flush();
+            }
+            if (endpoint != null) {
+                post(request);
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not export {} spans", batch.size(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void post(final byte[] request) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) endpoint.toURL().openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(request.length);
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write(request);
+            }
+            final int status = connection.getResponseCode();
+            if (status >= 300) {
+                LOG.warn("Exporting spans to {} failed with status {}", endpoint, status);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Builds an OTLP ExportTraceServiceRequest in its json encoding.
+     */
+    static Map<String, Object> exportRequest(final List<Span> spans) {
+        final List<Map<String, Object>> otlpSpans = new ArrayList<>(spans.size());
+        spans.forEach(span -> otlpSpans.add(span.toOtlp()));
+        final Map<String, Object> scopeSpans = ImmutableMap.of(
+                "scope", ImmutableMap.of("name", "io.vrap"),
+                "spans", otlpSpans);
+        final Map<String, Object> resourceSpans = ImmutableMap.of(
+                "resource", ImmutableMap.of("attributes", attributes(ImmutableMap.of("service.name", "vrap"))),
+                "scopeSpans", Collections.singletonList(scopeSpans));
+        return ImmutableMap.of("resourceSpans", Collections.singletonList(resourceSpans));
+    }
+
+    private static List<Map<String, Object>> attributes(final Map<String, Object> attributes) {
+        final List<Map<String, Object>> otlpAttributes = new ArrayList<>(attributes.size());
+        attributes.forEach((key, value) -> otlpAttributes.add(ImmutableMap.of(
+                "key", key,
+                "value", ImmutableMap.of(value instanceof Number ? "intValue" : "stringValue", value.toString()))));
+        return otlpAttributes;
+    }
+
+    private static String randomId(final int longs) {
+        final StringBuilder id = new StringBuilder(longs * 16);
+        for (int i = 0; i < longs; i++) {
+            final String hex = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            for (int pad = hex.length(); pad < 16; pad++) {
+                id.append('0');
+            }
+            id.append(hex);
+        }
+        return id.toString();
+    }
+
+    @Override
+    public void onStop(final StopEvent event) throws Exception {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * A parsed W3C traceparent header.
+     */
+    static class TraceParent {
+        private final String traceId;
+        private final String spanId;
+        private final boolean sampled;
+
+        private TraceParent(final String traceId, final String spanId, final boolean sampled) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.sampled = sampled;
+        }
+
+        /**
+         * @param header the traceparent header
+         * @return the trace parent or null if the header is missing or invalid
+         */
+        static TraceParent parse(final String header) {
+            if (header == null || header.length() < 55 || header.charAt(2) != '-' || header.charAt(35) != '-' || header.charAt(52) != '-') {
+                return null;
+            }
+            final String version = header.substring(0, 2);
+            if (!isHex(version) || version.equals("ff") || (version.equals("00") && header.length() != 55)
+                    || (header.length() > 55 && header.charAt(55) != '-')) {
+                return null;
+            }
+            final String traceId = header.substring(3, 35);
+            final String spanId = header.substring(36, 52);
+            final String flags = header.substring(53, 55);
+            if (!isHex(traceId) || !isHex(spanId) || !isHex(flags) || isZero(traceId) || isZero(spanId)) {
+                return null;
+            }
+            return new TraceParent(traceId, spanId, (Integer.parseInt(flags, 16) & 1) == 1);
+        }
+
+        private static boolean isHex(final String value) {
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isZero(final String value) {
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) != '0') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        public String getSpanId() {
+            return spanId;
+        }
+
+        public boolean isSampled() {
+            return sampled;
+        }
+
+        String toHeader() {
+            return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+        }
+    }
+
+    /**
+     * The trace of a sampled request, registered on the request.
+     */
+    static class Trace {
+        private final Tracing tracing;
+        private final String traceId;
+        private final String spanId = randomId(1);
+        private final String parentSpanId;
+        private final long startEpochNanos;
+        private final long startNanos = System.nanoTime();
+        private volatile String route;
+        private volatile String upstreamSpanId;
+
+        Trace(final Tracing tracing, final String traceId, final String parentSpanId) {
+            final Instant now = Instant.now();
+            this.tracing = tracing;
+            this.traceId = traceId;
+            this.parentSpanId = parentSpanId;
+            this.startEpochNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+        }
+
+        private String upstreamTraceParent() {
+            if (upstreamSpanId == null) {
+                upstreamSpanId = randomId(1);
+            }
+            return "00-" + traceId + "-" + upstreamSpanId + "-01";
+        }
+
+        void phase(final String phase, final long phaseStartNanos, final long durationNanos) {
+            final boolean upstream = Metrics.UPSTREAM.equals(phase);
+            final long start = startEpochNanos + phaseStartNanos - startNanos;
+            tracing.offer(new Span(traceId, upstream && upstreamSpanId != null ? upstreamSpanId : randomId(1), spanId, phase,
+                    upstream ? KIND_CLIENT : KIND_INTERNAL, start, start + durationNanos, Collections.emptyMap(), false));
+        }
+
+        private void end(final RequestOutcome outcome) {
+            final String method = outcome.getRequest().getMethod().getName();
+            final int status = outcome.getResponse().getStatus().getCode();
+            final Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("http.request.method", method);
+            attributes.put("url.path", outcome.getRequest().getPath());
+            if (route != null) {
+                attributes.put("http.route", route);
+            }
+            attributes.put("http.response.status_code", status);
+            tracing.offer(new Span(traceId, spanId, parentSpanId, route != null ? method + " " + route : method,
+                    KIND_SERVER, startEpochNanos, startEpochNanos + System.nanoTime() - startNanos, attributes, status >= 500));
+        }
+    }
+
+    static class Span {
+        private final String traceId;
+        private final String spanId;
+        private final String parentSpanId;
+        private final String name;
+        private final int kind;
+        private final long startEpochNanos;
+        private final long endEpochNanos;
+        private final Map<String, Object> attributes;
+        private final boolean error;
+
+        Span(final String traceId, final String spanId, final String parentSpanId, final String name, final int kind,
+             final long startEpochNanos, final long endEpochNanos, final Map<String, Object> attributes, final boolean error) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+            this.kind = kind;
+            this.startEpochNanos = startEpochNanos;
+            this.endEpochNanos = endEpochNanos;
+            this.attributes = attributes;
+            this.error = error;
+        }
+
+        Map<String, Object> toOtlp() {
+            final Map<String, Object> span = new LinkedHashMap<>();
+            span.put("traceId", traceId);
+            span.put("spanId", spanId);
+            if (parentSpanId != null) {
+                span.put("parentSpanId", parentSpanId);
+            }
+            span.put("name", name);
+            span.put("kind", kind);
+            span.put("startTimeUnixNano", String.valueOf(startEpochNanos));
+            span.put("endTimeUnixNano", String.valueOf(endEpochNanos));
+            if (!attributes.isEmpty()) {
+                span.put("attributes", attributes(attributes));
+            }
+            if (error) {
+                span.put("status", ImmutableMap.of("code", 2));
+            }
+            return span;
+        }
+    }
+}
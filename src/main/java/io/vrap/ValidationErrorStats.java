@@ -0,0 +1,214 @@
+package io.vrap;
+
+import ratpack.handling.Context;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the validation errors of the routes by route template, source, kind, context and normalized message
+ * over a sliding time window and keeps the most recent errors as samples.
+ *
+ * The number of distinct errors is bounded, errors which don't fit are only counted as dropped.
+ */
+class ValidationErrorStats {
+    public final static String REQUEST = "request";
+    public final static String RESPONSE = "response";
+
+    private final static int SLOTS = 15;
+    private final static Pattern QUOTED = Pattern.compile("\"[^\"]*\"|'[^']*'");
+    private final static Pattern NUMBER = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private final static Pattern UUID = Pattern.compile("\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+
+    private final Duration window;
+    private final long slotMillis;
+    private final int maxErrors;
+    private final Clock clock;
+    private final ConcurrentMap<List<String>, Entry> errors = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicReferenceArray<Sample> samples;
+    private final AtomicLong nextSample = new AtomicLong();
+
+    public ValidationErrorStats() {
+        this(Duration.ofMinutes(15), 1000, 50, Clock.systemUTC());
+    }
+
+    /**
+     * @param window     the time window the errors are counted in
+     * @param maxErrors  the maximum number of distinct errors
+     * @param maxSamples the number of recent errors kept as samples
+     * @param clock      the clock
+     */
+    ValidationErrorStats(final Duration window, final int maxErrors, final int maxSamples, final Clock clock) {
+        this.window = window;
+        this.slotMillis = Math.max(1, window.toMillis() / SLOTS);
+        this.maxErrors = maxErrors;
+        this.samples = new AtomicReferenceArray<>(maxSamples);
+        this.clock = clock;
+    }
+
+    /**
+     * Records a validation error of the route of the given context, if the stats are registered.
+     *
+     * @param ctx     the request context
+     * @param source  {@link #REQUEST} or {@link #RESPONSE}
+     * @param kind    the validation kind
+     * @param context the validation context
+     * @param message the error message
+     */
+    public static void record(final Context ctx, final String source, final String kind, final String context, final String message) {
+        ctx.maybeGet(ValidationErrorStats.class).ifPresent(stats -> stats.record(
+                ctx.maybeGet(RouteTemplate.class).map(RouteTemplate::getUriTemplate).orElse(ctx.getRequest().getPath()),
+                source, kind, context, message));
+    }
+
+    void record(final String route, final String source, final String kind, final String context, final String message) {
+        final Instant now = clock.instant();
+        final long slot = now.toEpochMilli() / slotMillis;
+        final List<String> key = Arrays.asList(route, source, kind, context, normalize(message));
+        Entry entry = errors.get(key);
+        if (entry == null) {
+            if (errors.size() >= maxErrors) {
+                errors.values().removeIf(e -> e.count(slot) == 0);
+            }
+            if (errors.size() >= maxErrors) {
+                dropped.increment();
+            } else {
+                final Entry created = new Entry();
+                entry = Optional.ofNullable(errors.putIfAbsent(key, created)).orElse(created);
+            }
+        }
+        if (entry != null) {
+            entry.record(slot, now, message);
+        }
+        samples.set((int) (nextSample.getAndIncrement() % samples.length()), new Sample(now, route, source, kind, context, message));
+    }
+
+    static String normalize(final String message) {
+        final String withoutUuids = UUID.matcher(message).replaceAll("<uuid>");
+        return NUMBER.matcher(QUOTED.matcher(withoutUuids).replaceAll("<string>")).replaceAll("<number>");
+    }
+
+    /**
+     * Returns the errors with the highest counts in the window and the most recent samples.
+     *
+     * @param top the number of errors to return
+     * @return the report
+     */
+    public Map<String, Object> report(final int top) {
+        final long slot = clock.millis() / slotMillis;
+        final List<Map<String, Object>> offenders = errors.entrySet().stream()
+                .map(e -> {
+                    final Map<String, Object> offender = new LinkedHashMap<>();
+                    offender.put("route", e.getKey().get(0));
+                    offender.put("source", e.getKey().get(1));
+                    offender.put("kind", e.getKey().get(2));
+                    offender.put("context", e.getKey().get(3));
+                    offender.put("message", e.getKey().get(4));
+                    offender.put("count", e.getValue().count(slot));
+                    offender.put("lastSeen", e.getValue().lastSeen.toString());
+                    offender.put("lastMessage", e.getValue().lastMessage);
+                    return offender;
+                })
+                .filter(offender -> (Long) offender.get("count") > 0)
+                .sorted(Comparator.comparing(offender -> -(Long) offender.get("count")))
+                .limit(top)
+                .collect(Collectors.toList());
+
+        final List<Sample> recent = new ArrayList<>();
+        final long next = nextSample.get();
+        for (long i = next - 1; i >= Math.max(0, next - samples.length()); i--) {
+            Optional.ofNullable(samples.get((int) (i % samples.length()))).ifPresent(recent::add);
+        }
+
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("window", window.toString());
+        report.put("distinctErrors", errors.size());
+        report.put("dropped", dropped.sum());
+        report.put("top", offenders);
+        report.put("samples", recent);
+        return report;
+    }
+
+    /**
+     * The counts of an error in the slots of the window.
+     */
+    private static class Entry {
+        private final long[] slots = new long[SLOTS];
+        private final long[] counts = new long[SLOTS];
+        private volatile Instant lastSeen;
+        private volatile String lastMessage;
+
+        synchronized void record(final long slot, final Instant now, final String message) {
+            final int index = (int) (slot % SLOTS);
+            if (slots[index] != slot) {
+                slots[index] = slot;
+                counts[index] = 0;
+            }
+            counts[index]++;
+            lastSeen = now;
+            lastMessage = message;
+        }
+
+        synchronized long count(final long slot) {
+            long count = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                if (slots[i] > slot - SLOTS) {
+                    count += counts[i];
+                }
+            }
+            return count;
+        }
+    }
+
+    public static class Sample {
+        private final String timestamp;
+        private final String route;
+        private final String source;
+        private final String kind;
+        private final String context;
+        private final String message;
+
+        private Sample(final Instant timestamp, final String route, final String source, final String kind, final String context, final String message) {
+            this.timestamp = timestamp.toString();
+            this.route = route;
+            this.source = source;
+            this.kind = kind;
+            this.context = context;
+            this.message = message;
+        }
+
+        public String getTimestamp() {
+            return timestamp;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getContext() {
+            return context;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package io.vrap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.handling.Context;
+import ratpack.http.TypedData;
+import ratpack.service.Service;
+import ratpack.service.StopEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes one json line per validated exchange with errors to a rotating file.
+ *
+ * The request threads only put the event into a lock-free ring buffer, the records are built and written
+ * in batches by a single writer thread. Events are dropped if the ring buffer is full or the records would
+ * exceed the configured bytes per second.
+ */
+class ValidationEventLog implements Service {
+    private final static Logger LOG = LoggerFactory.getLogger(ValidationEventLog.class);
+    private final static ObjectMapper MAPPER = new ObjectMapper();
+
+    private final static int CAPACITY = 8192;
+    private final static int BATCH_SIZE = 512;
+    private final static long MAX_FILE_SIZE = 10 * 1024 * 1024;
+    private final static int MAX_FILES = 5;
+
+    private final Path file;
+    private final int maxBodyLength;
+    private final long bytesPerSecond;
+
+    private final RingBuffer<Event> ring = new RingBuffer<>(CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    private OutputStream out;
+    private long fileSize;
+    private double budget;
+    private long budgetNanos = System.nanoTime();
+
+    /**
+     * @param file           the log file, rotated files get the suffixes .1 to .5
+     * @param maxBodyLength  the number of characters of the body logged as excerpt
+     * @param bytesPerSecond the maximum number of bytes written per second
+     */
+    public ValidationEventLog(final Path file, final int maxBodyLength, final long bytesPerSecond) throws IOException {
+        this.file = file;
+        this.maxBodyLength = maxBodyLength;
+        this.bytesPerSecond = bytesPerSecond;
+        this.budget = bytesPerSecond;
+        open();
+        writer = new Thread(this::write, "vrap-validation-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Logs the validation errors of the exchange of the given context, if the log is registered.
+     *
+     * @param ctx    the request context
+     * @param source {@link ValidationErrorStats#REQUEST} or {@link ValidationErrorStats#RESPONSE}
+     * @param status the status of the received response or null for request errors
+     * @param errors the validation errors
+     * @param body   the validated body, its bytes are copied and decoded by the writer thread
+     */
+    public static void record(final Context ctx, final String source, final Integer status, final List<?> errors, final TypedData body) {
+        ctx.maybeGet(ValidationEventLog.class).ifPresent(log -> log.offer(new Event(
+                Instant.now(),
+                ctx.maybeGet(RouteTemplate.class).map(RouteTemplate::getUriTemplate).orElse(null),
+                ctx.getRequest().getMethod().getName(),
+                ctx.getRequest().getUri(),
+                source, status, errors, body.getBytes(), body.getContentType().getCharset())));
+    }
+
+    boolean offer(final Event event) {
+        if (!ring.offer(event)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void write() {
+        final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        while (running || !ring.isEmpty()) {
+            final int events = ring.drain(BATCH_SIZE, event -> append(batch, event));
+            if (batch.size() > 0) {
+                flush(batch);
+            }
+            if (events == 0) {
+                if (dropped.sum() > 0) {
+                    LOG.warn("Dropped {} validation events", dropped.sumThenReset());
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        close();
+    }
+
+    private void append(final ByteArrayOutputStream batch, final Event event) {
+        try {
+            final byte[] record = MAPPER.writeValueAsBytes(event.toRecord(maxBodyLength));
+            final long now = System.nanoTime();
+            budget = Math.min(bytesPerSecond, budget + bytesPerSecond * (now - budgetNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+            budgetNanos = now;
+            if (record.length + 1 > budget) {
+                dropped.increment();
+                return;
+            }
+            budget -= record.length + 1;
+            batch.write(record);
+            batch.write('\n');
+        } catch (IOException e) {
+            LOG.error("Could not serialize validation event", e);
+        }
+    }
+
+    private void flush(final ByteArrayOutputStream batch) {
+        try {
+            if (fileSize + batch.size() > MAX_FILE_SIZE && fileSize > 0) {
+                rotate();
+            }
+            batch.writeTo(out);
+            out.flush();
+            fileSize += batch.size();
+        } catch (IOException e) {
+            LOG.error("Could not write validation events to {}", file, e);
+        } finally {
+            batch.reset();
+        }
+    }
+
+    private void open() throws IOException {
+        out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileSize = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        for (int i = MAX_FILES - 1; i >= 1; i--) {
+            final Path rotated = rotated(i);
+            if (Files.exists(rotated)) {
+                Files.move(rotated, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    private Path rotated(final int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOG.error("Could not close {}", file, e);
+        }
+    }
+
+    @Override
+    public void onStop(final StopEvent event) throws Exception {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    static class Event {
+        private final Instant timestamp;
+        private final String route;
+        private final String method;
+        private final String uri;
+        private final String source;
+        private final Integer status;
+        private final List<?> errors;
+        private final byte[] body;
+        private final String charset;
+
+        Event(final Instant timestamp, final String route, final String method, final String uri, final String source,
+              final Integer status, final List<?> errors, final byte[] body, final String charset) {
+            this.timestamp = timestamp;
+            this.route = route;
+            this.method = method;
+            this.uri = uri;
+            this.source = source;
+            this.status = status;
+            this.errors = errors;
+            this.body = body;
+            this.charset = charset;
+        }
+
+        Map<String, Object> toRecord(final int maxBodyLength) {
+            final Map<String, Object> record = new LinkedHashMap<>();
+            record.put("timestamp", timestamp.toString());
+            record.put("route", route);
+            record.put("method", method);
+            record.put("uri", uri);
+            record.put("source", source);
+            if (status != null) {
+                record.put("status", status);
+            }
+            record.put("errors", errors);
+            if (body != null && body.length > 0) {
+                final String text = new String(body, charset());
+                final Map<String, Object> bodyRecord = new LinkedHashMap<>();
+                bodyRecord.put("length", text.length());
+                bodyRecord.put("sha256", Hashing.sha256().hashString(text, Charsets.UTF_8).toString());
+                if (maxBodyLength > 0) {
+                    bodyRecord.put("excerpt", text.length() > maxBodyLength ? text.substring(0, maxBodyLength) : text);
+                }
+                record.put("body", bodyRecord);
+            }
+            return record;
+        }
+
+        private Charset charset() {
+            try {
+                return charset == null ? Charsets.UTF_8 : Charset.forName(charset);
+            } catch (IllegalArgumentException e) {
+                return Charsets.UTF_8;
+            }
+        }
+    }
+}
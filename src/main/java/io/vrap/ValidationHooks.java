@@ -0,0 +1,34 @@
+package io.vrap;
+
+import ratpack.handling.Context;
+import ratpack.http.TypedData;
+
+import java.util.List;
+
+/**
+ * Reports the validation errors of an exchange to the {@link ValidationErrorStats} and the
+ * {@link ValidationEventLog}, if they are registered.
+ */
+class ValidationHooks {
+    interface Error {
+        Enum<?> getKind();
+
+        String getContext();
+
+        String getMessage();
+    }
+
+    /**
+     * @param ctx    the request context
+     * @param source {@link ValidationErrorStats#REQUEST} or {@link ValidationErrorStats#RESPONSE}
+     * @param status the status of the received response or null for request errors
+     * @param errors the validation errors
+     * @param body   the validated body, only read if the event log is registered
+     */
+    static void record(final Context ctx, final String source, final Integer status, final List<? extends Error> errors, final TypedData body) {
+        if (ctx.maybeGet(ValidationErrorStats.class).isPresent()) {
+            errors.forEach(error -> ValidationErrorStats.record(ctx, source, error.getKind().name(), error.getContext(), error.getMessage()));
+        }
+        ValidationEventLog.record(ctx, source, status, errors, body);
+    }
+}
@@ -85,7 +85,7 @@ public class Validator implements Service {
         }
     }
 
-    public static class ValidationError {
+    public static class ValidationError implements ValidationHooks.Error {
         private final ValidationKind kind;
         private final String context;
         private final String message;
@@ -96,14 +96,17 @@ public class Validator implements Service {
             this.message = message;
         }
 
+        @Override
         public ValidationKind getKind() {
             return kind;
         }
 
+        @Override
         public String getContext() {
             return context;
         }
 
+        @Override
         public String getMessage() {
             return message;
         }
@@ -130,7 +133,7 @@ public class Validator implements Service {
         final List<ValidationError> errors = new ArrayList<>();
 
         if (disableValidation(context.getRequest().getHeaders(), ValidationFlag.request)) {
-            return wrapAndLogErrors(errors);
+            return wrapAndLogErrors(context, errors);
         }
 
         final Api api = context.get(RamlModelRepository.class).getApi();
@@ -149,15 +152,17 @@ public class Validator implements Service {
                 .map(bodyTypeDecl -> validate(body.getText(), bodyTypeDecl, ValidationKind.body, "request"))
                 .orElse(Collections.emptyList()));
 
-        return wrapAndLogErrors(errors);
+        return wrapAndLogErrors(context, errors);
     }
 
-    private Optional<ValidationErrors> wrapAndLogErrors(List<ValidationError> errors) {
+    private Optional<ValidationErrors> wrapAndLogErrors(final Context context, List<ValidationError> errors) {
         if (errors.isEmpty()) {
             return Optional.empty();
         } else {
             final ValidationErrors validationErrors = new ValidationErrors(errors);
-            LOG.info("Request has errors: {}", validationErrors);
+            if (!context.maybeGet(ValidationEventLog.class).isPresent()) {
+                WarmUp.info(context, LOG, "Request has errors: {}", validationErrors);
+            }
 
             return Optional.of(validationErrors);
         }
@@ -197,7 +202,9 @@ public class Validator implements Service {
             return Optional.empty();
         } else {
             final ValidationErrors validationErrors = new ValidationErrors(errors, receivedResponse.getStatusCode(), bodyValue);
-            LOG.info("Received response has errors: {}", validationErrors);
+            if (!ctx.maybeGet(ValidationEventLog.class).isPresent()) {
+                WarmUp.info(ctx, LOG, "Received response has errors: {}", validationErrors);
+            }
 
             return Optional.of(validationErrors);
         }
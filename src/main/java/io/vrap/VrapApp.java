@@ -1,5 +1,7 @@
 package io.vrap;
 
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
 import org.apache.commons.cli.*;
 import org.apache.commons.lang.math.NumberUtils;
 import org.slf4j.Logger;
@@ -7,17 +9,23 @@ import org.slf4j.LoggerFactory;
 import ratpack.func.Action;
 import ratpack.guice.Guice;
 import ratpack.handlebars.HandlebarsModule;
+import ratpack.handling.Chain;
 import ratpack.handling.Handlers;
 import ratpack.http.client.HttpClient;
+import ratpack.registry.Registry;
 import ratpack.server.RatpackServer;
+import ratpack.service.Service;
 
+import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 import static ratpack.handlebars.Template.handlebarsTemplate;
+import static ratpack.jackson.Jackson.json;
 
 /**
  * The vrap app.
@@ -29,22 +37,101 @@ public class VrapApp {
     public static final String PARSER_RAML = "raml";
     public static final String API_RAML = "api-" + PARSER_RAML;
     public static final String API_RMF = "api-" + PARSER_RMF;
+    public static final String API_ARCHIVE = API_RAML + ".zip";
+    public static final String ADMIN_URI = "vrap";
+    /**
+     * Separates the arguments of multiple apis served by one vrap process.
+     */
+    public static final String API_SEPARATOR = "+";
 
     private static Logger LOG = LoggerFactory.getLogger(VrapApp.class);
 
     public static void main(String[] args) throws Exception {
 
-        final VrapOptions options = new VrapOptions(args);
+        final List<VrapOptions> apis = VrapOptions.parseAll(args);
+        final VrapOptions options = apis.get(0);
 
         if (options.getDuplicateDetection()) {
             System.setProperty("yagi.json_duplicate_keys_detection", options.getDuplicateDetection().toString());
         }
-        final Path filePath = options.getFilePath();
-        final Path fileName = filePath.getFileName();
+        final Stopwatch startup = Stopwatch.createStarted();
+        final List<SpecReloader> reloaders = new ArrayList<>();
+        for (final VrapOptions api : apis) {
+            reloaders.add(load(api));
+        }
+        LOG.info("Models loaded after {}", startup);
+
+        final TokenCache tokenCache = new TokenCache();
+        final Metrics metrics = new Metrics();
+        final ValidationErrorStats validationErrorStats = new ValidationErrorStats();
+        final AccessLog accessLog = new AccessLog(options.getAccessLogSample(), options.getAccessLogSlow(), options.getAccessLogJson(),
+                options.getAccessLogFile().orElse(null));
+        final ValidationEventLog validationEventLog = options.getValidationLog().isPresent() ?
+                new ValidationEventLog(options.getValidationLog().get(), options.getValidationLogBodyLength(), options.getValidationLogRate()) :
+                null;
+        final Tracing tracing = options.getTraceFile().isPresent() || options.getTraceEndpoint().isPresent() ?
+                new Tracing(options.getTraceSample(), options.getTraceFile().orElse(null), options.getTraceEndpoint().orElse(null)) :
+                null;
+        RatpackServer.start(server -> server
+                .serverConfig(c -> {
+                    c.findBaseDir();
+                    c.port(options.getPort());
+                })
+                .registry(Guice.registry(b -> {
+                    b.module(HandlebarsModule.class)
+                            .bindInstance(options)
+                            .bindInstance(HttpClient.class, HttpClient.of(httpClientSpec -> httpClientSpec.poolSize(options.getClientConnectionPoolSize())));
+                    b.bindInstance(metrics);
+                    b.bindInstance(validationErrorStats);
+                    b.multiBindInstance(Service.class, accessLog);
+                    if (validationEventLog != null) {
+                        b.bindInstance(validationEventLog).multiBindInstance(Service.class, validationEventLog);
+                    }
+                    if (tracing != null) {
+                        b.multiBindInstance(Service.class, tracing);
+                    }
+                    if (options.getTokenCache()) {
+                        b.bindInstance(tokenCache);
+                    }
+                    if (options.getTokenIssuer()) {
+                        b.bindInstance(new TokenIssuer(options.getTokenTtl(), options.getTokenScopes(), options.getTokenClients()));
+                    }
+                    reloaders.forEach(reloader -> b.multiBindInstance(Service.class, reloader));
+                }))
+                .handlers(chain -> {
+                    if (options.getServerTiming()) {
+                        chain.all(ServerTiming::start);
+                    }
+                    chain.all(accessLog);
+                    if (tracing != null) {
+                        chain.all(tracing);
+                    }
+                    chain.prefix(ADMIN_URI, chain1 -> {
+                        chain1.get("memory", new MemoryReportHandler(reloaders));
+                        chain1.get("metrics", ctx -> ctx.getResponse().send(Metrics.CONTENT_TYPE, metrics.scrape()));
+                        chain1.get("validation-errors", ctx -> ctx.render(json(validationErrorStats.report(
+                                NumberUtils.toInt(ctx.getRequest().getQueryParams().get("top"), 20)))));
+                        if (options.getTokenCache()) {
+                            chain1.get("token-cache", ctx -> ctx.render(json(tokenCache.getStats())));
+                        }
+                    });
+                    for (final SpecReloader reloader : reloaders) {
+                        final VrapOptions api = reloader.getOptions();
+                        final Registry apiRegistry = Registry.of(r -> r.add(api).add(reloader));
+                        if (api.getMount().isPresent()) {
+                            chain.prefix(api.getMount().get(), chain1 -> chain1.register(apiRegistry, chain2 -> apiHandlers(chain2, reloader)));
+                        } else {
+                            chain.register(apiRegistry, chain1 -> apiHandlers(chain1, reloader));
+                        }
+                    }
+                })
+        );
+        LOG.info("Started after {}", startup);
+    }
 
-        final FileContentModifier contentModifier = new FileContentModifier(fileName.toString());
-        final List<Path> watchFiles = new IncludeCollector(filePath).collect();
-        watchFiles.add(filePath);
+    private static SpecReloader load(final VrapOptions options) throws Exception {
+        final Path filePath = options.getFilePath();
+        final IncludeGraph includes = timed("includes", () -> new IncludeCollector(filePath).collect());
 
         if (options.getCheckOnly()) {
             RamlModelRepository.of(filePath, true).getApi();
@@ -55,41 +142,56 @@ public class VrapApp {
             System.exit(0);
         }
 
-        final RamlModelRepository ramlRepo = RamlModelRepository.of(filePath);
-        final RmfModelRepository rmfRepo = RmfModelRepository.of(filePath);
+        final ApiModels models = ApiModels.load(options, filePath, includes.getFiles());
+        if (options.getWarmUpIterations() > 0) {
+            new WarmUp(options, models).run(options.getWarmUpIterations());
+        }
+        return new SpecReloader(options, filePath, models, includes);
+    }
 
-        RatpackServer.start(server -> server
-                .serverConfig(c -> {
-                    c.findBaseDir();
-                    c.port(options.getPort());
-                })
-                .registry(Guice.registry(b -> b.module(HandlebarsModule.class)
-                        .bindInstance(options)
-                        .bindInstance(ramlRepo)
-                        .bindInstance(rmfRepo)
-                        .bindInstance(HttpClient.class, HttpClient.of(httpClientSpec -> httpClientSpec.poolSize(options.getClientConnectionPoolSize())))
-                        .bind(Validator.class)
-                        .bind(RmfValidator.class)
-                ))
-                .handlers(chain -> chain.get(ctx -> ctx.render(handlebarsTemplate("index.html")))
-                        .prefix(API_URI, chain1 -> chain1.all(new RamlRouter(ramlRepo.getApi()).getRoutes()))
-                        .prefix(RMF_URI, chain1 -> chain1.all(new RmfRouter(rmfRepo.getApi()).getRoutes()))
-                        .prefix("auth", chain1 -> chain1.all(new AuthRouter(rmfRepo.getApi()).getRoutes()))
-                        .prefix(API_RAML, chain1 ->
-                                chain1.all(ctx -> ctx.insert(
-                                        new VrapExtensionHandler(API_URI),
-                                        new RamlFilesHandler(contentModifier, API_RAML, API_URI).getHandler()))
-                        )
-                        .prefix(API_RMF, chain1 ->
-                                chain1.all(ctx -> ctx.insert(
-                                        new VrapExtensionHandler(RMF_URI),
-                                        new RamlFilesHandler(contentModifier, API_RMF, RMF_URI).getHandler()))
-                        )
-                )
-        );
+    private static void apiHandlers(final Chain chain, final SpecReloader reloader) throws Exception {
+        final VrapOptions options = reloader.getOptions();
+        final FileContentModifier contentModifier = new FileContentModifier(options.getFilePath().getFileName().toString());
+        final IncludeResolver includeResolver = new IncludeResolver();
+
+        final String browserPath = options.isParserEnabled(PARSER_RAML) ? API_RAML : API_RMF;
+        final String archiveApiUri = options.isParserEnabled(PARSER_RAML) ? API_URI : RMF_URI;
+        chain.get(ctx -> ctx.render(handlebarsTemplate(Collections.singletonMap("browserPath", browserPath), "index.html")));
+        chain.get(API_ARCHIVE, reloader.handler(models -> ctx -> ctx.get(SpecArchive.class).send(ctx, archiveApiUri)));
+        if (options.isParserEnabled(PARSER_RAML)) {
+            chain.prefix(API_URI, chain1 -> chain1.all(reloader.handler(ApiModels::getRamlRoutes)))
+                    .prefix(API_RAML, chain1 ->
+                            chain1.all(reloader.handler(models -> Handlers.chain(
+                                    new VrapExtensionHandler(API_URI, models.getRamlExtension()),
+                                    new RamlFilesHandler(contentModifier, includeResolver, API_RAML, API_URI).getHandler())))
+                    );
+        }
+        if (options.isParserEnabled(PARSER_RMF)) {
+            chain.prefix(RMF_URI, chain1 -> chain1.all(reloader.handler(ApiModels::getRmfRoutes)))
+                    .prefix("auth", chain1 -> chain1.all(reloader.handler(ApiModels::getAuthRoutes)))
+                    .prefix(API_RMF, chain1 ->
+                            chain1.all(reloader.handler(models -> Handlers.chain(
+                                    new VrapExtensionHandler(RMF_URI, models.getRmfExtension()),
+                                    new RamlFilesHandler(contentModifier, includeResolver, API_RMF, RMF_URI).getHandler())))
+                    );
+        }
+    }
+
+    /**
+     * Runs the given callable and logs the time it took.
+     *
+     * @param phase the name of the startup phase
+     * @param callable the callable to run
+     * @return the result of the callable
+     */
+    static <T> T timed(final String phase, final Callable<T> callable) throws Exception {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final T result = callable.call();
+        LOG.info("Loading {} took {}", phase, stopwatch);
+        return result;
     }
 
-    static class VrapOptions {
+    static class VrapOptions implements Cloneable {
         private Path filePath;
         private VrapMode mode;
         private int port;
@@ -102,6 +204,28 @@ public class VrapApp {
         private Boolean checkOnly;
         private Boolean rmfCheckOnly;
         private Boolean strictValidation;
+        private Set<String> parsers;
+        private Path snapshotFile;
+        private Boolean watch;
+        private String mount;
+        private int warmUpIterations;
+        private Boolean tokenCache;
+        private Boolean tokenIssuer;
+        private int tokenTtl;
+        private Set<String> tokenScopes;
+        private Map<String, String> tokenClients;
+        private Boolean serverTiming;
+        private Path validationLog;
+        private int validationLogBodyLength;
+        private long validationLogRate;
+        private int accessLogSample;
+        private long accessLogSlow;
+        private Boolean accessLogJson;
+        private Path accessLogFile;
+        private double traceSample;
+        private Path traceFile;
+        private URI traceEndpoint;
+        private List<String> serverOptions;
 
         public VrapOptions(String[] args)
         {
@@ -132,6 +256,32 @@ public class VrapApp {
             sslVerificationMode = parseSslMode(cmd.getOptionValue(getSSLVerificationOption().getOpt(), SSLVerificationMode.normal.name()));
             clientConnectionPoolSize = NumberUtils.toInt(cmd.getOptionValue(getClientConnectionPoolSizeOption().getOpt()), 10);
             strictValidation = cmd.hasOption(getStrictOption().getOpt());
+            snapshotFile = Optional.ofNullable(cmd.getOptionValue(getSnapshotOption().getOpt())).map(f -> Paths.get(f).toAbsolutePath()).orElse(null);
+            watch = cmd.hasOption(getWatchOption().getOpt());
+            mount = cmd.getOptionValue(getMountOption().getOpt());
+            tokenCache = cmd.hasOption(getTokenCacheOption().getOpt());
+            tokenIssuer = cmd.hasOption(getTokenIssuerOption().getOpt());
+            serverTiming = cmd.hasOption(getServerTimingOption().getOpt());
+            validationLog = Optional.ofNullable(cmd.getOptionValue(getValidationLogOption().getOpt())).map(f -> Paths.get(f).toAbsolutePath()).orElse(null);
+            validationLogBodyLength = NumberUtils.toInt(cmd.getOptionValue(getValidationLogBodyOption().getOpt()), 256);
+            validationLogRate = NumberUtils.toLong(cmd.getOptionValue(getValidationLogRateOption().getOpt()), 1024 * 1024);
+            accessLogSample = NumberUtils.toInt(cmd.getOptionValue(getAccessLogSampleOption().getOpt()), 1);
+            accessLogSlow = NumberUtils.toLong(cmd.getOptionValue(getAccessLogSlowOption().getOpt()), 1000);
+            accessLogJson = cmd.hasOption(getAccessLogJsonOption().getOpt());
+            accessLogFile = Optional.ofNullable(cmd.getOptionValue(getAccessLogFileOption().getOpt())).map(f -> Paths.get(f).toAbsolutePath()).orElse(null);
+            traceSample = NumberUtils.toDouble(cmd.getOptionValue(getTraceSampleOption().getOpt()), 1.0);
+            traceFile = Optional.ofNullable(cmd.getOptionValue(getTraceFileOption().getOpt())).map(f -> Paths.get(f).toAbsolutePath()).orElse(null);
+            traceEndpoint = Optional.ofNullable(cmd.getOptionValue(getTraceEndpointOption().getOpt())).map(URI::create).orElse(null);
+            tokenTtl = NumberUtils.toInt(cmd.getOptionValue(getTokenTtlOption().getOpt()), 3600);
+            tokenScopes = new LinkedHashSet<>(Splitter.on(' ').omitEmptyStrings().trimResults().splitToList(
+                    Optional.ofNullable(cmd.getOptionValue(getTokenScopesOption().getOpt())).orElse("")));
+            tokenClients = parseTokenClientsOption(cmd.getOptionValue(getTokenClientsOption().getOpt(), ""));
+            warmUpIterations = NumberUtils.toInt(cmd.getOptionValue(getWarmUpOption().getOpt()), 0);
+            parsers = parseParsersOption(cmd.getOptionValue(getParsersOption().getOpt(), PARSER_RAML + "," + PARSER_RMF));
+            serverOptions = getServerOptions().stream()
+                    .filter(option -> cmd.hasOption(option.getOpt()))
+                    .map(option -> "--" + option.getLongOpt())
+                    .collect(Collectors.toList());
 
             if (cmd.hasOption(getHelpOption().getOpt())) {
                 printHelp();
@@ -159,9 +309,87 @@ public class VrapApp {
             options.addOption(getCheckOnlyOption());
             options.addOption(getRmfCheckOnlyOption());
             options.addOption(getStrictOption());
+            options.addOption(getParsersOption());
+            options.addOption(getSnapshotOption());
+            options.addOption(getWatchOption());
+            options.addOption(getMountOption());
+            options.addOption(getWarmUpOption());
+            options.addOption(getTokenCacheOption());
+            options.addOption(getTokenIssuerOption());
+            options.addOption(getTokenTtlOption());
+            options.addOption(getTokenScopesOption());
+            options.addOption(getTokenClientsOption());
+            options.addOption(getServerTimingOption());
+            options.addOption(getValidationLogOption());
+            options.addOption(getValidationLogBodyOption());
+            options.addOption(getValidationLogRateOption());
+            options.addOption(getAccessLogSampleOption());
+            options.addOption(getAccessLogSlowOption());
+            options.addOption(getAccessLogJsonOption());
+            options.addOption(getAccessLogFileOption());
+            options.addOption(getTraceSampleOption());
+            options.addOption(getTraceFileOption());
+            options.addOption(getTraceEndpointOption());
             return options;
         }
 
+        /**
+         * Returns the options which apply to the whole server and not to a single api.
+         *
+         * @return the server wide options
+         */
+        private List<Option> getServerOptions()
+        {
+            return Arrays.asList(getPortOption(), getJsonDuplicateKeyOption(), getClientConnectionPoolSizeOption(),
+                    getTokenCacheOption(), getTokenIssuerOption(), getTokenTtlOption(), getTokenScopesOption(), getTokenClientsOption(),
+                    getServerTimingOption(), getValidationLogOption(), getValidationLogBodyOption(), getValidationLogRateOption(),
+                    getAccessLogSampleOption(), getAccessLogSlowOption(), getAccessLogJsonOption(), getAccessLogFileOption(),
+                    getTraceSampleOption(), getTraceFileOption(), getTraceEndpointOption());
+        }
+
+        /**
+         * Parses the options of all apis, the arguments of each api are separated by {@link #API_SEPARATOR}.
+         * The server wide options like the port can only be given for the first api.
+         *
+         * @param args the command line arguments
+         * @return the options of each api
+         */
+        public static List<VrapOptions> parseAll(final String[] args)
+        {
+            final List<List<String>> apiArgs = new ArrayList<>();
+            apiArgs.add(new ArrayList<>());
+            for (final String arg : args) {
+                if (arg.equals(API_SEPARATOR)) {
+                    apiArgs.add(new ArrayList<>());
+                } else {
+                    apiArgs.get(apiArgs.size() - 1).add(arg);
+                }
+            }
+
+            final List<VrapOptions> apis = new ArrayList<>();
+            final Set<String> mounts = new HashSet<>();
+            for (final List<String> arguments : apiArgs) {
+                final VrapOptions api = new VrapOptions(arguments.toArray(new String[0]));
+                if (!apis.isEmpty() && !api.serverOptions.isEmpty()) {
+                    System.out.println("Server options are only allowed for the first api: " + String.join(", ", api.serverOptions));
+                    api.printHelp();
+                    System.exit(1);
+                }
+                if (apiArgs.size() > 1 && api.mount == null) {
+                    api.mount = com.google.common.io.Files.getNameWithoutExtension(api.filePath.getFileName().toString());
+                }
+                if (api.mount != null) {
+                    api.mount = api.mount.replaceAll("^/+|/+$", "");
+                    if (!mounts.add(api.mount)) {
+                        LOG.error("Duplicate mount prefix: {}", api.mount);
+                        System.exit(1);
+                    }
+                }
+                apis.add(api);
+            }
+            return apis;
+        }
+
         private Option getCheckOnlyOption()
         {
             return Option.builder("c")
@@ -192,6 +420,232 @@ public class VrapApp {
                     .build();
         }
 
+        private Option getParsersOption()
+        {
+            return Option.builder("pa")
+                    .longOpt("parsers")
+                    .argName("parsers")
+                    .desc("Comma separated list of parsers to load: " + Arrays.toString(new String[] { PARSER_RAML, PARSER_RMF }))
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getSnapshotOption()
+        {
+            return Option.builder("sn")
+                    .longOpt("snapshot")
+                    .argName("file")
+                    .desc("Cache file for the parsed rmf model, reused while the raml files are unchanged")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getWatchOption()
+        {
+            return Option.builder("w")
+                    .longOpt("watch")
+                    .desc("Reload the raml files when they change")
+                    .hasArg(false)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getMountOption()
+        {
+            return Option.builder("mt")
+                    .longOpt("mount")
+                    .argName("prefix")
+                    .desc("Path prefix to serve the api under, defaults to the file name when serving multiple apis")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getWarmUpOption()
+        {
+            return Option.builder("wu")
+                    .longOpt("warm-up")
+                    .argName("iterations")
+                    .desc("Pass the examples of every method through the routes and validators before accepting requests")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTokenCacheOption()
+        {
+            return Option.builder("tc")
+                    .longOpt("token-cache")
+                    .desc("Cache the access tokens of client credentials grants proxied to the OAuth 2.0 access token uri until shortly before they expire")
+                    .hasArg(false)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTokenIssuerOption()
+        {
+            return Option.builder("ti")
+                    .longOpt("token-issuer")
+                    .desc("Issue access tokens locally instead of proxying to the OAuth 2.0 access token uri and require them on all routes")
+                    .hasArg(false)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTokenTtlOption()
+        {
+            return Option.builder("tt")
+                    .longOpt("token-ttl")
+                    .argName("seconds")
+                    .desc("Lifetime of the locally issued access tokens (default: 3600)")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTokenScopesOption()
+        {
+            return Option.builder("ts")
+                    .longOpt("token-scopes")
+                    .argName("scopes")
+                    .desc("Space separated scopes the local token issuer grants (default: the scopes of the security scheme)")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTokenClientsOption()
+        {
+            return Option.builder("tcl")
+                    .longOpt("token-clients")
+                    .argName("id:secret,...")
+                    .desc("Comma separated client credentials the local token issuer requires, without it any client gets a token")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getServerTimingOption()
+        {
+            return Option.builder("stm")
+                    .longOpt("server-timing")
+                    .desc("Add Server-Timing and X-Vrap-Timing headers with the latency breakdown to the responses of the routes")
+                    .hasArg(false)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getValidationLogOption()
+        {
+            return Option.builder("vl")
+                    .longOpt("validation-log")
+                    .argName("file")
+                    .desc("Write the validation errors as json lines to the given file instead of the log, rotated at 10MB")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getValidationLogBodyOption()
+        {
+            return Option.builder("vlb")
+                    .longOpt("validation-log-body")
+                    .argName("characters")
+                    .desc("Number of characters of the validated body written to the validation log, 0 for the hash only (default: 256)")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getValidationLogRateOption()
+        {
+            return Option.builder("vlr")
+                    .longOpt("validation-log-rate")
+                    .argName("bytes")
+                    .desc("Maximum number of bytes written to the validation log per second (default: 1048576)")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getAccessLogSampleOption()
+        {
+            return Option.builder("als")
+                    .longOpt("access-log-sample")
+                    .argName("n")
+                    .desc("Log one in n successful requests, failed and slow requests are always logged (default: 1)")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getAccessLogSlowOption()
+        {
+            return Option.builder("alt")
+                    .longOpt("access-log-slow")
+                    .argName("millis")
+                    .desc("Always log requests taking at least the given milliseconds (default: 1000)")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getAccessLogJsonOption()
+        {
+            return Option.builder("alj")
+                    .longOpt("access-log-json")
+                    .desc("Write the access log as json lines instead of the NCSA common log format")
+                    .hasArg(false)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getAccessLogFileOption()
+        {
+            return Option.builder("alf")
+                    .longOpt("access-log-file")
+                    .argName("file")
+                    .desc("Write the access log to the given file instead of the log")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTraceSampleOption()
+        {
+            return Option.builder("trs")
+                    .longOpt("trace-sample")
+                    .argName("ratio")
+                    .desc("Trace the given ratio of requests without sampled traceparent header, 0 only traces sampled traceparents (default: 1.0)")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTraceFileOption()
+        {
+            return Option.builder("trf")
+                    .longOpt("trace-file")
+                    .argName("file")
+                    .desc("Trace requests and append the spans as OTLP json lines to the given file")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
+        private Option getTraceEndpointOption()
+        {
+            return Option.builder("tre")
+                    .longOpt("trace-endpoint")
+                    .argName("url")
+                    .desc("Trace requests and post the spans as OTLP json to the given url, e.g. http://localhost:4318/v1/traces")
+                    .hasArg(true)
+                    .required(false)
+                    .build();
+        }
+
         private Option getModeOption()
         {
             return Option.builder("m")
@@ -277,7 +731,7 @@ public class VrapApp {
         private void printHelp()
         {
             final HelpFormatter formatter = new HelpFormatter();
-            formatter.printHelp("vrap [OPTIONS] <file.raml>", options);
+            formatter.printHelp("vrap [OPTIONS] <file.raml> [" + API_SEPARATOR + " [OPTIONS] <file.raml>]...", options);
         }
 
         private VrapMode parseModeOption(String value)
@@ -294,6 +748,40 @@ public class VrapApp {
             return null;
         }
 
+        private Set<String> parseParsersOption(String value)
+        {
+            final Set<String> parsers = new HashSet<>();
+            for (final String parser : Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+                if (!parser.equals(PARSER_RAML) && !parser.equals(PARSER_RMF)) {
+                    System.out.println("Unknown parser: " + parser);
+                    printHelp();
+                    System.exit(1);
+                }
+                parsers.add(parser);
+            }
+            if (parsers.isEmpty()) {
+                System.out.println("At least one parser is required");
+                printHelp();
+                System.exit(1);
+            }
+            return parsers;
+        }
+
+        private Map<String, String> parseTokenClientsOption(String value)
+        {
+            final Map<String, String> clients = new HashMap<>();
+            for (final String client : Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+                final int separator = client.indexOf(':');
+                if (separator <= 0) {
+                    System.out.println("Invalid token client, expected id:secret: " + client);
+                    printHelp();
+                    System.exit(1);
+                }
+                clients.put(client.substring(0, separator), client.substring(separator + 1));
+            }
+            return clients;
+        }
+
         private SSLVerificationMode parseSslMode(String value)
         {
             Optional<SSLVerificationMode> mode = SSLVerificationMode.parse(value);
@@ -329,6 +817,22 @@ public class VrapApp {
             return Optional.ofNullable(apiUrl);
         }
 
+        /**
+         * Returns a copy of these options which proxies to the given api url.
+         *
+         * @param apiUrl the api url
+         * @return the copied options
+         */
+        VrapOptions withApiUrl(final String apiUrl) {
+            try {
+                final VrapOptions copy = (VrapOptions) clone();
+                copy.apiUrl = apiUrl;
+                return copy;
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
         public int getClientConnectionPoolSize() {
             return clientConnectionPoolSize;
         }
@@ -340,5 +844,54 @@ public class VrapApp {
         public Boolean getRmfCheckOnly() { return rmfCheckOnly; }
 
         public Boolean getStrictValidation() { return strictValidation; }
+
+        public Optional<Path> getSnapshotFile() { return Optional.ofNullable(snapshotFile); }
+
+        public Boolean getWatch() { return watch; }
+
+        public Boolean getTokenCache() { return tokenCache; }
+
+        public Boolean getTokenIssuer() { return tokenIssuer; }
+
+        public Duration getTokenTtl() { return Duration.ofSeconds(tokenTtl); }
+
+        public Set<String> getTokenScopes() { return tokenScopes; }
+
+        public Map<String, String> getTokenClients() { return tokenClients; }
+
+        public Boolean getServerTiming() { return serverTiming; }
+
+        public Optional<Path> getValidationLog() { return Optional.ofNullable(validationLog); }
+
+        public int getValidationLogBodyLength() { return validationLogBodyLength; }
+
+        public long getValidationLogRate() { return validationLogRate; }
+
+        public int getAccessLogSample() { return accessLogSample; }
+
+        public long getAccessLogSlow() { return accessLogSlow; }
+
+        public Boolean getAccessLogJson() { return accessLogJson; }
+
+        public Optional<Path> getAccessLogFile() { return Optional.ofNullable(accessLogFile); }
+
+        public double getTraceSample() { return traceSample; }
+
+        public Optional<Path> getTraceFile() { return Optional.ofNullable(traceFile); }
+
+        public Optional<URI> getTraceEndpoint() { return Optional.ofNullable(traceEndpoint); }
+
+        public int getWarmUpIterations() { return warmUpIterations; }
+
+        public Optional<String> getMount() { return Optional.ofNullable(mount); }
+
+        /**
+         * Returns the mount prefix followed by a slash or the empty string if the api isn't mounted.
+         *
+         * @return the mount path
+         */
+        public String getMountPath() { return getMount().map(m -> m + "/").orElse(""); }
+
+        public boolean isParserEnabled(final String parser) { return parsers.contains(parser); }
     }
 }
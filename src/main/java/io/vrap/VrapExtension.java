@@ -0,0 +1,144 @@
+package io.vrap;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import org.raml.v2.api.model.v10.api.Api;
+import org.raml.v2.api.model.v10.methods.Method;
+import org.raml.v2.api.model.v10.resources.Resource;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The model of the vrap extension of an api, computed once per loaded api model.
+ *
+ * It holds everything but the parts which depend on the request, the port and the mount of the api.
+ */
+class VrapExtension {
+    private final Path fileName;
+    private final String basePath;
+    private final List<ResourceExtension> resourceExtensions;
+    private final List<String> oauthSchemes;
+
+    private VrapExtension(final Path fileName, final String baseUri, final List<ResourceExtension> resourceExtensions, final List<String> oauthSchemes) throws URISyntaxException {
+        this.fileName = fileName;
+        this.basePath = new URI(baseUri.replace("{", "%7B").replace("}", "%7D")).getPath().replace("%7B", "{").replace("%7D", "}");
+        this.resourceExtensions = resourceExtensions;
+        this.oauthSchemes = oauthSchemes;
+    }
+
+    /**
+     * Creates the extension from the raml-parser-2 model.
+     *
+     * @param filePath the raml file
+     * @param api      the api
+     * @return the extension
+     */
+    public static VrapExtension of(final Path filePath, final Api api) throws URISyntaxException {
+        return new VrapExtension(filePath.getFileName(), api.baseUri().value(), resourceExtensions(api.resources(), ""),
+                api.securitySchemes().stream()
+                        .filter(securityScheme -> securityScheme.type().equals("OAuth 2.0"))
+                        .map(securityScheme -> securityScheme.name())
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Creates the extension from the rmf model.
+     *
+     * @param filePath the raml file
+     * @param api      the api
+     * @return the extension
+     */
+    public static VrapExtension of(final Path filePath, final io.vrap.rmf.raml.model.modules.Api api) throws URISyntaxException {
+        return new VrapExtension(filePath.getFileName(), api.getBaseUri().getTemplate(), rmfResourceExtensions(api.getResources(), ""),
+                api.getSecuritySchemes().stream()
+                        .filter(securityScheme -> securityScheme.getType().getName().equals("OAuth 2.0"))
+                        .map(io.vrap.rmf.raml.model.security.SecurityScheme::getName)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the template model of the extension.
+     *
+     * @param localUri    the uri of vrap including the mount path of the api
+     * @param apiUri      the uri of the proxied api relative to the local uri
+     * @param queryParams the supported query params of the request
+     * @return the template model
+     */
+    public ImmutableMap<String, Object> model(final String localUri, final String apiUri, final String queryParams) {
+        return ImmutableMap.<String, Object>builder()
+                .put("fileName", fileName)
+                .put("queryParams", queryParams)
+                .put("resourceExtensions", resourceExtensions)
+                .put("proxyUri", localUri + apiUri + basePath)
+                .put("modes", Joiner.on(", ").join(VrapMode.values()))
+                .put("flags", Joiner.on(", ").join(ValidationFlag.values()))
+                .put("authProxyUri", localUri + "auth")
+                .put("oauthSchemes", oauthSchemes)
+                .build();
+    }
+
+    private static List<ResourceExtension> resourceExtensions(final List<Resource> resources, final String currentIndent) {
+        final List<ResourceExtension> result = new ArrayList<>();
+        for (final Resource resource : resources) {
+            final List<String> methods = resource.methods().stream().map(Method::method).collect(Collectors.toList());
+
+            result.add(new ResourceExtension(resource.relativeUri().value(), methods, currentIndent));
+            result.addAll(resourceExtensions(resource.resources(), currentIndent + "    "));
+        }
+        return result;
+    }
+
+    private static List<ResourceExtension> rmfResourceExtensions(final List<io.vrap.rmf.raml.model.resources.Resource> resources, final String currentIndent) {
+        final List<ResourceExtension> result = new ArrayList<>();
+        for (final io.vrap.rmf.raml.model.resources.Resource resource : resources) {
+            final List<String> methods = resource.getMethods().stream()
+                    .map(io.vrap.rmf.raml.model.resources.Method::getMethodName)
+                    .collect(Collectors.toList());
+
+            result.add(new ResourceExtension(resource.getRelativeUri().getTemplate(), methods, currentIndent));
+            result.addAll(rmfResourceExtensions(resource.getResources(), currentIndent + "    "));
+        }
+        return result;
+    }
+
+    private static class ResourceExtension {
+        private final String resourcePath;
+        private final List<ResourceExtensionMethod> methods;
+        private final String indent;
+
+        public ResourceExtension(final String resourcePath, final List<String> methods, final String indent) {
+            this.resourcePath = resourcePath;
+            this.methods = methods.stream().map(ResourceExtensionMethod::new).collect(Collectors.toList());
+            this.indent = indent;
+        }
+
+        public String getResourcePath() {
+            return resourcePath;
+        }
+
+        public List<ResourceExtensionMethod> getMethods() {
+            return methods;
+        }
+
+        public String getIndent() {
+            return indent;
+        }
+    }
+
+    private static class ResourceExtensionMethod {
+        private final String method;
+
+        public ResourceExtensionMethod(final String method) {
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+    }
+}
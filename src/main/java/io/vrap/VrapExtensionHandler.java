@@ -1,115 +1,57 @@
 package io.vrap;
 
-import com.google.common.base.Joiner;
+import com.github.jknack.handlebars.Handlebars;
 import com.google.common.collect.ImmutableMap;
-import org.raml.v2.api.model.v10.api.Api;
-import org.raml.v2.api.model.v10.methods.Method;
-import org.raml.v2.api.model.v10.resources.Resource;
-import org.raml.v2.api.model.v10.security.SecurityScheme;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import ratpack.handling.Context;
 import ratpack.handling.Handler;
 
-import java.net.URI;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
-
-import static ratpack.handlebars.Template.handlebarsTemplate;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
  * Serves the vrap extension which extends the raml api specification with vrap mode headers.
+ *
+ * The rendered extension is cached by the {@link RenderedFileCache} of the loaded models. Of the query only the
+ * supported query params are passed on to the extended file, so the cache is keyed by the include flag and
+ * not by the raw query.
  */
 class VrapExtensionHandler implements Handler {
-    private final static Logger LOG = LoggerFactory.getLogger(VrapExtensionHandler.class);
-
     private final String apiUri;
+    private final VrapExtension extension;
 
-    public VrapExtensionHandler(final String apiUri) {
+    /**
+     * @param apiUri    the uri of the proxied api
+     * @param extension the extension of the model served under the api uri
+     */
+    public VrapExtensionHandler(final String apiUri, final VrapExtension extension) {
         this.apiUri = apiUri;
+        this.extension = extension;
     }
 
     @Override
     public void handle(final Context ctx) throws Exception {
-        final RamlModelRepository ramlModelRepository = ctx.get(RamlModelRepository.class);
-        final Api api = ramlModelRepository.getApi();
         final String path = ctx.getPathBinding().getPastBinding();
 
-        if (path.equals("Vrap-Extension.raml")) {
-            final Path filePath = ramlModelRepository.getFilePath();
-            List<ResourceExtension> resourceExtensions = resourceExtensions(api.resources(), "");
-            final Integer port = ctx.getServerConfig().getPort();
-            final String authProxyUri = "http://localhost:" + port.toString() + "/auth";
-            final String proxyUri = "http://localhost:" + port.toString() + "/" + apiUri + new URI(api.baseUri().value().replace("{", "%7B").replace("}", "%7D")).getPath().replace("%7B", "{").replace("%7D", "}");
-            List<SecurityScheme> oauthSchemes = api.securitySchemes().stream().filter(securityScheme -> securityScheme.type().equals("OAuth 2.0")).collect(Collectors.toList());
-
-            final ImmutableMap<String, Object> model =
-                    ImmutableMap.<String, Object>builder()
-                            .put("fileName", filePath.getFileName())
-                            .put("queryParams", ctx.getRequest().getQuery())
-                            .put("resourceExtensions", resourceExtensions)
-                            .put("proxyUri", proxyUri)
-                            .put("modes", Joiner.on(", ").join(VrapMode.values()))
-                            .put("flags", Joiner.on(", ").join(ValidationFlag.values()))
-                            .put("authProxyUri", authProxyUri)
-                            .put("oauthSchemes", oauthSchemes.stream().map(securityScheme -> securityScheme.name()).collect(Collectors.toList()))
-                    .build();
+        if (path.equals("Vrap-Extension.raml") && extension != null) {
+            final Path filePath = ctx.get(VrapApp.VrapOptions.class).getFilePath();
+            final Map<Path, FileStamp> dependencies = ImmutableMap.of(filePath, FileStamp.of(filePath));
 
             ctx.byContent(byContentSpec -> byContentSpec
-                    .type("application/raml+yaml", () -> ctx.render(handlebarsTemplate(model, "api-raml/Vrap-Extension.raml")))
-                    .html(() -> ctx.render(handlebarsTemplate(model, "api-raml/Vrap-Extension.html")))
+                    .type("application/raml+yaml", () -> render(ctx, dependencies, "application/raml+yaml", "api-raml/Vrap-Extension.raml"))
+                    .html(() -> render(ctx, dependencies, "text/html;charset=UTF-8", "api-raml/Vrap-Extension.html"))
                     .noMatch("application/raml+yaml"));
         } else {
             ctx.next();
         }
     }
 
-    private List<ResourceExtension> resourceExtensions(final List<Resource> resources, final String currentIndent) {
-        final List<ResourceExtension> result = new ArrayList<>();
-        for (final Resource resource : resources) {
-            final List<String> methods = resource.methods().stream().map(Method::method).collect(Collectors.toList());
-
-            result.add(new ResourceExtension(resource.relativeUri().value(), methods, currentIndent));
-            result.addAll(resourceExtensions(resource.resources(), currentIndent + "    "));
-        }
-        return result;
-    }
-
-    private static class ResourceExtension {
-        private final String resourcePath;
-        private final List<ResourceExtensionMethod> methods;
-        private final String indent;
-
-        public ResourceExtension(final String resourcePath, final List<String> methods, final String indent) {
-            this.resourcePath = resourcePath;
-            this.methods = methods.stream().map(ResourceExtensionMethod::new).collect(Collectors.toList());
-            this.indent = indent;
-        }
-
-        public String getResourcePath() {
-            return resourcePath;
-        }
-
-        public List<ResourceExtensionMethod> getMethods() {
-            return methods;
-        }
-
-        public String getIndent() {
-            return indent;
-        }
-    }
-
-    private static class ResourceExtensionMethod {
-        private final String method;
-
-        public ResourceExtensionMethod(final String method) {
-            this.method = method;
-        }
-
-        public String getMethod() {
-            return method;
-        }
+    private void render(final Context ctx, final Map<Path, FileStamp> dependencies, final String contentType, final String template) throws Exception {
+        final boolean resolveIncludes = QueryParams.resolveIncludes(ctx);
+        final String query = resolveIncludes ? QueryParams.INCLUDE : "";
+        ctx.get(RenderedFileCache.class).send(ctx, Arrays.asList(ctx.getRequest().getPath(), resolveIncludes, contentType), dependencies, contentType, out -> {
+            final String localUri = "http://localhost:" + ctx.getServerConfig().getPort() + "/" + ctx.get(VrapApp.VrapOptions.class).getMountPath();
+            out.write(ctx.get(Handlebars.class).compile(template).apply(extension.model(localUri, apiUri, query)));
+        });
     }
 }
@@ -0,0 +1,269 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import io.vrap.rmf.raml.model.types.AnyType;
+import io.vrap.rmf.raml.model.util.InstanceHelper;
+import org.raml.v2.api.model.v10.api.Api;
+import org.raml.v2.api.model.v10.bodies.Response;
+import org.raml.v2.api.model.v10.datamodel.ExampleSpec;
+import org.raml.v2.api.model.v10.datamodel.TypeDeclaration;
+import org.raml.v2.api.model.v10.methods.Method;
+import org.raml.v2.api.model.v10.resources.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.ExecController;
+import ratpack.handling.Context;
+import ratpack.handling.Handler;
+import ratpack.handling.Handlers;
+import ratpack.http.client.HttpClient;
+import ratpack.registry.Registry;
+import ratpack.server.RatpackServer;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms up the routes and validators of an api by sending the declared examples of every method
+ * through the routes before the server accepts requests.
+ *
+ * The routes are served by a warm up server on an ephemeral loopback port. The requests are sent in proxy mode
+ * and proxied to a stub upstream on the same server, which answers with the declared response example, so
+ * routing, request validation, proxying and response validation run as for real traffic without calling the
+ * proxied api. The examples are taken from the model of each enabled parser. The warm up is registered with the
+ * requests, so that the handlers log them at debug instead of info level.
+ */
+class WarmUp {
+    private final static Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+    private final static String URI_PARAMETER = "warmup";
+    private final static String UPSTREAM_URI = "warmup-upstream";
+    private final static long TIMEOUT_MINUTES = 1;
+
+    private final VrapApp.VrapOptions options;
+    private final ApiModels models;
+
+    private final List<Exchange> exchanges = new ArrayList<>();
+    /**
+     * The exchanges by the method and path the stub upstream receives.
+     */
+    private final Map<String, Exchange> upstreamExchanges = new HashMap<>();
+    private volatile VrapApp.VrapOptions warmUpOptions;
+
+    public WarmUp(final VrapApp.VrapOptions options, final ApiModels models) {
+        this.options = options;
+        this.models = models;
+    }
+
+    /**
+     * Runs the warm up with the given number of iterations, the requests of an iteration are sent concurrently.
+     *
+     * @param iterations the number of times each example is sent
+     */
+    public void run(final int iterations) throws Exception {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        if (models.getRamlRepo() != null && models.getRamlRepo().getApi() != null) {
+            final Api api = models.getRamlRepo().getApi();
+            ramlExchanges(api.resources(), basePath(api.baseUri().value()));
+        }
+        if (models.getRmfRepo() != null && models.getRmfRepo().getApi() != null) {
+            final io.vrap.rmf.raml.model.modules.Api api = models.getRmfRepo().getApi();
+            rmfExchanges(api.getResources(), basePath(api.getBaseUri().getTemplate()));
+        }
+
+        final RatpackServer server = RatpackServer.of(spec -> spec
+                .serverConfig(c -> c.port(0).address(InetAddress.getLoopbackAddress()))
+                .registryOf(r -> r.add(HttpClient.class, HttpClient.of(httpClientSpec -> httpClientSpec.poolSize(options.getClientConnectionPoolSize()))))
+                .handlers(chain -> chain
+                        .prefix(UPSTREAM_URI, chain1 -> chain1.all(this::upstream))
+                        .all(routes())));
+        server.start();
+        try {
+            final String baseUri = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getBindPort();
+            warmUpOptions = options.withApiUrl(baseUri + "/" + UPSTREAM_URI);
+            final Registry registry = server.getRegistry().orElseThrow(() -> new IllegalStateException("Warm up server has no registry"));
+            final ExecController execController = registry.get(ExecController.class);
+            final HttpClient httpClient = registry.get(HttpClient.class);
+            for (int i = 0; i < iterations; i++) {
+                final CountDownLatch latch = new CountDownLatch(exchanges.size());
+                exchanges.forEach(exchange -> execController.fork()
+                        .onComplete(execution -> latch.countDown())
+                        .start(execution -> send(httpClient, baseUri, exchange)));
+                if (!latch.await(TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                    LOG.warn("Warm up iteration {} didn't complete within {} minute", i + 1, TIMEOUT_MINUTES);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+        LOG.info("Warm up of {} with {} requests and {} iterations took {}", options.getFilePath().getFileName(), exchanges.size(), iterations, stopwatch);
+    }
+
+    private Handler routes() {
+        final Handler routes = Handlers.chain(
+                Handlers.prefix(VrapApp.API_URI, models.getRamlRoutes()),
+                Handlers.prefix(VrapApp.RMF_URI, models.getRmfRoutes()));
+        final Handler mounted = options.getMount().isPresent() ? Handlers.prefix(options.getMount().get(), routes) : routes;
+        return ctx -> ctx.insert(Registry.builder().add(VrapApp.VrapOptions.class, warmUpOptions).add(WarmUp.class, this).build()
+                .join(models.getRegistry()), mounted);
+    }
+
+    /**
+     * Logs the given message at info level, or at debug level if the request is sent by the warm up.
+     *
+     * @param ctx       the request context
+     * @param log       the logger
+     * @param format    the message format
+     * @param arguments the message arguments
+     */
+    static void info(final Context ctx, final Logger log, final String format, final Object... arguments) {
+        if (ctx.maybeGet(WarmUp.class).isPresent()) {
+            log.debug(format, arguments);
+        } else {
+            log.info(format, arguments);
+        }
+    }
+
+    /**
+     * Answers a proxied request with the response example of its exchange.
+     */
+    private void upstream(final Context ctx) {
+        final Exchange exchange = upstreamExchanges.get(upstreamKey(ctx.getRequest().getMethod().getName(), ctx.getPathBinding().getPastBinding()));
+        if (exchange == null || exchange.responseBody == null) {
+            ctx.getResponse().status(exchange != null ? exchange.responseStatus : 404).send();
+            return;
+        }
+        ctx.getResponse().status(exchange.responseStatus).send(exchange.responseContentType, exchange.responseBody);
+    }
+
+    private void send(final HttpClient httpClient, final String baseUri, final Exchange exchange) {
+        httpClient.request(URI.create(baseUri + "/" + options.getMountPath() + exchange.prefix + exchange.path), spec -> {
+            spec.method(exchange.method.toUpperCase());
+            spec.getHeaders().set("X-Vrap-Mode", VrapMode.proxy.name());
+            if (exchange.requestContentType != null) {
+                spec.getHeaders().set("Accept", exchange.requestContentType);
+                spec.getBody().type(exchange.requestContentType).bytes(Optional.ofNullable(exchange.requestBody).orElse("").getBytes(Charsets.UTF_8));
+            } else if (exchange.responseContentType != null) {
+                spec.getHeaders().set("Accept", exchange.responseContentType);
+            }
+        }).result(result -> {
+            if (result.isError()) {
+                LOG.debug("Warm up request {} {} failed", exchange.method, exchange.path, result.getThrowable());
+            }
+        });
+    }
+
+    private void ramlExchanges(final List<Resource> resources, final String parentPath) {
+        for (final Resource resource : resources) {
+            final String path = parentPath + replaceUriParameters(resource.relativeUri().value());
+            for (final Method method : resource.methods()) {
+                final Exchange exchange = new Exchange(VrapApp.API_URI, path, method.method());
+                for (final Response response : method.responses()) {
+                    for (final TypeDeclaration body : response.body()) {
+                        final Optional<String> example = example(body);
+                        if (example.isPresent() && exchange.responseBody == null) {
+                            exchange.response(Integer.parseInt(response.code().value()), body.name(), example.get());
+                        }
+                    }
+                }
+                if (method.body().isEmpty()) {
+                    add(exchange);
+                }
+                for (final TypeDeclaration body : method.body()) {
+                    add(exchange.request(body.name(), example(body).orElse(null)));
+                }
+            }
+            ramlExchanges(resource.resources(), path);
+        }
+    }
+
+    private void rmfExchanges(final List<io.vrap.rmf.raml.model.resources.Resource> resources, final String parentPath) {
+        for (final io.vrap.rmf.raml.model.resources.Resource resource : resources) {
+            final String path = parentPath + replaceUriParameters(resource.getRelativeUri().getTemplate());
+            for (final io.vrap.rmf.raml.model.resources.Method method : resource.getMethods()) {
+                final Exchange exchange = new Exchange(VrapApp.RMF_URI, path, method.getMethodName());
+                method.getResponses().forEach(response -> response.getBodies().forEach(body -> {
+                    final Optional<String> example = example(body.getType());
+                    if (example.isPresent() && exchange.responseBody == null) {
+                        exchange.response(Integer.parseInt(response.getStatusCode()), body.getContentType(), example.get());
+                    }
+                }));
+                if (method.getBodies().isEmpty()) {
+                    add(exchange);
+                }
+                method.getBodies().forEach(body -> add(exchange.request(body.getContentType(), example(body.getType()).orElse(null))));
+            }
+            rmfExchanges(resource.getResources(), path);
+        }
+    }
+
+    private void add(final Exchange exchange) {
+        exchanges.add(exchange);
+        upstreamExchanges.put(upstreamKey(exchange.method, exchange.path.substring(1)), exchange);
+    }
+
+    private static String upstreamKey(final String method, final String path) {
+        return method.toUpperCase() + " " + path;
+    }
+
+    private static Optional<String> example(final TypeDeclaration typeDeclaration) {
+        final ExampleSpec example = Optional.ofNullable(typeDeclaration.example())
+                .orElse(typeDeclaration.examples() != null && !typeDeclaration.examples().isEmpty() ? typeDeclaration.examples().get(0) : null);
+        return Optional.ofNullable(example).map(ExampleSpec::value);
+    }
+
+    private static Optional<String> example(final AnyType type) {
+        if (type == null || type.getExamples().isEmpty() || type.getExamples().get(0).getValue() == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(InstanceHelper.toJson(type.getExamples().get(0).getValue()));
+    }
+
+    private static String basePath(final String baseUri) {
+        final String path = URI.create(baseUri.replace("{", "%7B").replace("}", "%7D")).getPath().replace("%7B", "{").replace("%7D", "}");
+        return replaceUriParameters(path.endsWith("/") ? path.substring(0, path.length() - 1) : path);
+    }
+
+    private static String replaceUriParameters(final String uriTemplate) {
+        return uriTemplate.replaceAll("\\{[^}]+}", URI_PARAMETER);
+    }
+
+    /**
+     * A warm up request with the response the stub upstream answers it with.
+     */
+    private static class Exchange {
+        private final String prefix;
+        private final String path;
+        private final String method;
+        private String requestContentType;
+        private String requestBody;
+        private int responseStatus = 204;
+        private String responseContentType;
+        private String responseBody;
+
+        private Exchange(final String prefix, final String path, final String method) {
+            this.prefix = prefix;
+            this.path = path;
+            this.method = method;
+        }
+
+        private void response(final int status, final String contentType, final String body) {
+            this.responseStatus = status;
+            this.responseContentType = contentType;
+            this.responseBody = body;
+        }
+
+        /**
+         * Returns a copy of this exchange with the given request body.
+         */
+        private Exchange request(final String contentType, final String body) {
+            final Exchange exchange = new Exchange(prefix, path, method);
+            exchange.requestContentType = contentType;
+            exchange.requestBody = body;
+            exchange.response(responseStatus, responseContentType, responseBody);
+            return exchange;
+        }
+    }
+}
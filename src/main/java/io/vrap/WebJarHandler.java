@@ -1,45 +1,57 @@
 package io.vrap;
 
 import com.google.common.base.Joiner;
-import com.google.common.io.Resources;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ratpack.exec.Blocking;
+import ratpack.file.MimeTypes;
 import ratpack.handling.Context;
 import ratpack.handling.Handler;
-import ratpack.path.PathBinding;
+import ratpack.http.Response;
 
 import java.io.IOException;
 import java.net.URI;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.net.URL;
+import java.nio.file.*;
+import java.time.Instant;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static ratpack.util.Exceptions.uncheck;
 
 /**
  * Handler for loading assets from a web jar.
+ *
+ * On the first request all assets below the include path are loaded into memory, each with its content type,
+ * etag and gzip variant, no matter if the web jar is a jar on the classpath or vrap runs from a shadow/flat jar
+ * or an exploded classpath. As the web jar path contains the version, the assets are served with long-lived cache headers.
  */
 class WebJarHandler implements Handler {
     private final static Logger LOG = LoggerFactory.getLogger(WebJarHandler.class);
 
     private static final String WEBJAR_ROOT = "META-INF/resources/webjars";
     private static final String DEFAULT_INCLUDE_PATH = "dist";
-
-    /**
-     * If vrap is running from a shadow/flat jar, the webjars will be directly available on the classpath.
-     *
-     * In this case the jar file system will be empty.
-     */
-    private final Optional<FileSystem> jarFileSystem;
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
 
     private final String moduleName;
     private final String version;
     private final String includePath;
+    private final ClassLoader classLoader;
+
+    private volatile Map<String, Asset> assets;
 
     private final static ConcurrentMap<URI, FileSystem> JAR_FILE_SYSTEMS = new ConcurrentHashMap<>();
 
@@ -48,54 +60,136 @@ class WebJarHandler implements Handler {
     }
 
     public WebJarHandler(final String moduleName, final String version, final String includePath) {
+        this(moduleName, version, includePath, MoreObjects.firstNonNull(Thread.currentThread().getContextClassLoader(), WebJarHandler.class.getClassLoader()));
+    }
+
+    /**
+     * @param classLoader the class loader to look up the web jar with
+     */
+    WebJarHandler(final String moduleName, final String version, final String includePath, final ClassLoader classLoader) {
         this.moduleName = moduleName;
         this.version = version;
         this.includePath = includePath;
-        final Optional<URI> jarUri = jarUri(moduleName, version);
-        this.jarFileSystem = jarUri.map(uri -> JAR_FILE_SYSTEMS.computeIfAbsent(uri, this::initJarFileSystem));
+        this.classLoader = classLoader;
     }
 
     /**
-     * If vrap is running from a shadow/flat jar, the webjars will be directly available on the classpath.
-     * In this case the jar file system will be empty and the returned uri optional uri will be empty.
-     *
-     * @param moduleName the module name
-     * @param version the version
+     * Returns the root path of the assets, in the jar file system if the web jar is packaged in a jar.
      *
-     * @return the optional jar uri
+     * @return the root path
      */
-    private Optional<URI> jarUri(final String moduleName, final String version) {
-        final String webJarPath = Joiner.on("/").join(WEBJAR_ROOT, moduleName, version);
-        final String resourceUrl = Resources.getResource(webJarPath).toString();
-        final String codeLocationUrl = "jar:" + getClass().getProtectionDomain().getCodeSource().getLocation().toString();
-
-        return resourceUrl.startsWith(codeLocationUrl) ?
-                Optional.empty() :
-                Optional.of(URI.create(resourceUrl.split("!")[0]));
+    private Path rootPath() throws Exception {
+        final String webJarPath = Joiner.on("/").join(WEBJAR_ROOT, moduleName, version, includePath);
+        final URL url = classLoader.getResource(webJarPath);
+        Preconditions.checkArgument(url != null, "resource %s not found.", webJarPath);
+        final URI uri = url.toURI();
+        if (uri.getScheme().equals("jar")) {
+            final String[] parts = uri.toString().split("!", 2);
+            final FileSystem jarFileSystem = JAR_FILE_SYSTEMS.computeIfAbsent(URI.create(parts[0]), this::initJarFileSystem);
+            return jarFileSystem.getPath(parts[1]);
+        }
+        return Paths.get(uri);
     }
 
     private FileSystem initJarFileSystem(final URI uri) {
         try {
             return FileSystems.newFileSystem(uri, Collections.emptyMap());
+        } catch (FileSystemAlreadyExistsException e) {
+            return FileSystems.getFileSystem(uri);
         } catch (IOException e) {
             throw uncheck(e);
         }
     }
 
+    private Map<String, Asset> loadAssets(final MimeTypes mimeTypes) throws Exception {
+        if (assets == null) {
+            synchronized (this) {
+                if (assets == null) {
+                    final Path root = rootPath();
+                    try (final Stream<Path> files = Files.walk(root)) {
+                        assets = ImmutableMap.copyOf(files.filter(Files::isRegularFile).collect(Collectors.toMap(
+                                file -> root.relativize(file).toString().replace('\\', '/'),
+                                file -> Asset.of(file, mimeTypes))));
+                    }
+                    LOG.info("Loaded {} assets of web jar {}/{}", assets.size(), moduleName, version);
+                }
+            }
+        }
+        return assets;
+    }
+
     @Override
     public void handle(final Context ctx) throws Exception {
-        final PathBinding pathBinding = ctx.getPathBinding();
-        final String path = pathBinding.getPastBinding();
-        final String resourePathStr = Joiner.on("/").join(WEBJAR_ROOT, moduleName, version, includePath, path);
-
-        final Path resourcePath = jarFileSystem.isPresent() ?
-                jarFileSystem.map(fs -> fs.getPath(resourePathStr)).get() :
-                ctx.getFileSystemBinding().file(resourePathStr);
-
-        if (Files.exists(resourcePath)) {
-            ctx.render(resourcePath);
+        final String path = ctx.getPathBinding().getPastBinding();
+        final Map<String, Asset> loadedAssets = assets;
+        if (loadedAssets != null) {
+            send(ctx, loadedAssets.get(path));
         } else {
+            final MimeTypes mimeTypes = ctx.get(MimeTypes.class);
+            Blocking.get(() -> loadAssets(mimeTypes)).then(loaded -> send(ctx, loaded.get(path)));
+        }
+    }
+
+    private static void send(final Context ctx, final Asset asset) {
+        if (asset == null) {
             ctx.next();
+            return;
+        }
+        final boolean gzip = asset.gzipped != null && Gzip.isAccepted(ctx);
+        final String etag = gzip ? Gzip.etag(asset.etag) : asset.etag;
+        final Response response = ctx.getResponse();
+        response.getHeaders()
+                .set(HttpHeaderNames.ETAG, etag)
+                .set(HttpHeaderNames.CACHE_CONTROL, CACHE_CONTROL)
+                .setDate(HttpHeaderNames.LAST_MODIFIED, Date.from(asset.lastModified));
+        if (asset.gzipped != null) {
+            response.getHeaders().set(HttpHeaderNames.VARY, "Accept-Encoding");
+        }
+        if (FileSender.isNotModified(ctx, etag, asset.lastModified)) {
+            response.status(304).send();
+        } else if (gzip) {
+            response.getHeaders().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+            response.send(asset.contentType, asset.gzipped.duplicate());
+        } else {
+            response.noCompress().send(asset.contentType, asset.content.duplicate());
+        }
+    }
+
+    /**
+     * An asset in direct memory, the buffers are never released and are sent as duplicates.
+     */
+    private static class Asset {
+        private final String contentType;
+        private final String etag;
+        private final Instant lastModified;
+        private final ByteBuf content;
+        private final ByteBuf gzipped;
+
+        private Asset(final String contentType, final String etag, final Instant lastModified, final ByteBuf content, final ByteBuf gzipped) {
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.content = content;
+            this.gzipped = gzipped;
+        }
+
+        static Asset of(final Path file, final MimeTypes mimeTypes) {
+            try {
+                final byte[] content = Files.readAllBytes(file);
+                final String contentType = mimeTypes.getContentType(file.getFileName().toString());
+                final byte[] gzipped = Gzip.isCompressible(contentType) ? Gzip.compress(content) : null;
+                return new Asset(contentType,
+                        "\"" + Hashing.sha256().hashBytes(content) + "\"",
+                        Files.getLastModifiedTime(file).toInstant(),
+                        directBuffer(content),
+                        gzipped != null && gzipped.length < content.length ? directBuffer(gzipped) : null);
+            } catch (IOException e) {
+                throw uncheck(e);
+            }
+        }
+
+        private static ByteBuf directBuffer(final byte[] bytes) {
+            return Unpooled.unreleasableBuffer(Unpooled.directBuffer(bytes.length).writeBytes(bytes));
         }
     }
 }
@@ -0,0 +1,52 @@
+package io.vrap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class AccessLogTest {
+
+    @Test
+    public void shouldWriteCommonLogFormat() throws Exception {
+        final Path file = Files.createTempFile("vrap", ".log");
+        final AccessLog log = new AccessLog(1, 1000, false, file);
+
+        log.offer(new AccessLog.Entry("127.0.0.1", Instant.parse("2018-01-01T00:00:00Z"), "GET", "/api/products?limit=1",
+                "HTTP/1.1", 200, "42", TimeUnit.MILLISECONDS.toNanos(12)));
+        log.offer(new AccessLog.Entry("127.0.0.1", Instant.parse("2018-01-01T00:00:01Z"), "POST", "/api/products",
+                "HTTP/1.1", 400, null, TimeUnit.MILLISECONDS.toNanos(3)));
+        log.onStop(null);
+
+        final List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith("127.0.0.1 - - [").endsWith("] \"GET /api/products?limit=1 HTTP/1.1\" 200 42 12ms");
+        assertThat(lines.get(1)).endsWith("\"POST /api/products HTTP/1.1\" 400 - 3ms");
+    }
+
+    @Test
+    public void shouldWriteJsonLines() throws Exception {
+        final Path file = Files.createTempFile("vrap", ".ndjson");
+        final AccessLog log = new AccessLog(1, 1000, true, file);
+
+        log.offer(new AccessLog.Entry("127.0.0.1", Instant.parse("2018-01-01T00:00:00Z"), "GET", "/api/products?where=name=\"x\"",
+                "HTTP/1.1", 200, "42", TimeUnit.MICROSECONDS.toNanos(1500)));
+        log.onStop(null);
+
+        final List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(1);
+        final JsonNode record = new ObjectMapper().readTree(lines.get(0));
+        assertThat(record.get("timestamp").asText()).isEqualTo("2018-01-01T00:00:00Z");
+        assertThat(record.get("uri").asText()).isEqualTo("/api/products?where=name=\"x\"");
+        assertThat(record.get("status").asInt()).isEqualTo(200);
+        assertThat(record.get("bytes").asInt()).isEqualTo(42);
+        assertThat(record.get("durationMs").asDouble()).isEqualTo(1.5);
+    }
+}
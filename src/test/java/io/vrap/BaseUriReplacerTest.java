@@ -0,0 +1,58 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+import org.raml.v2.api.RamlModelBuilder;
+import org.raml.v2.api.model.v10.api.Api;
+import ratpack.handling.Handler;
+import ratpack.test.handling.HandlingResult;
+import ratpack.test.handling.RequestFixture;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class BaseUriReplacerTest {
+
+    @Test
+    public void shouldStreamJsonWithReplacedUris() throws Exception {
+        final Path dir = Files.createTempDirectory("vrap-base-uri").toRealPath();
+        final Path raml = Files.write(dir.resolve("api.raml"), ("#%RAML 1.0\n" +
+                "title: Test\n" +
+                "baseUri: https://api.example.com/v1\n" +
+                "securitySchemes:\n" +
+                "  oauth:\n" +
+                "    type: OAuth 2.0\n" +
+                "    settings:\n" +
+                "      accessTokenUri: https://auth.example.com/oauth/token\n" +
+                "      authorizationGrants: [ client_credentials ]\n").getBytes(Charsets.UTF_8));
+        final Path withBaseUri = Files.write(dir.resolve("with.json"),
+                "{\"title\":{\"nested\":[1,2]},\"baseUri\":\"https://api.example.com/v1\",\"token\":\"https://auth.example.com/oauth/token\"}".getBytes(Charsets.UTF_8));
+        final Path withoutBaseUri = Files.write(dir.resolve("without.json"),
+                "{\"uri\":\"https://api.example.com/v1\",\"token\":\"https://auth.example.com/oauth/token\"}".getBytes(Charsets.UTF_8));
+
+        final Api api = new RamlModelBuilder().buildApi(raml.toFile()).getApiV10();
+        final BaseUriReplacer replacer = BaseUriReplacer.of(api);
+        final StringWriter replacedWith = new StringWriter();
+        final StringWriter replacedWithout = new StringWriter();
+        final Handler handler = ctx -> {
+            replacer.preprocess(ctx, withBaseUri, "api", replacedWith);
+            replacer.preprocess(ctx, withoutBaseUri, "api", replacedWithout);
+            ctx.getResponse().send();
+        };
+        final HandlingResult result = RequestFixture.handle(handler, fixture -> fixture
+                .registry(registry -> registry.add(new VrapApp.VrapOptions(new String[]{raml.toString()}))));
+
+        assertThat(result.getStatus().getCode()).isEqualTo(200);
+        assertThat(replacedWith.toString())
+                .contains("\"baseUri\":\"http://localhost:")
+                .contains("/api\"")
+                .doesNotContain("example.com")
+                .startsWith("{\"title\":{\"nested\":[1,2]}");
+        assertThat(replacedWithout.toString())
+                .contains("\"uri\":\"https://api.example.com/v1\"")
+                .contains("/auth/oauth\"");
+    }
+}
@@ -0,0 +1,41 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+import ratpack.handling.Handler;
+import ratpack.test.handling.HandlingResult;
+import ratpack.test.handling.RequestFixture;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FileSenderTest {
+
+    @Test
+    public void shouldSendWholeFileUnmodified() throws Exception {
+        final Path file = Files.write(Files.createTempFile("vrap", ".raml"), "#%RAML 1.0".getBytes(Charsets.UTF_8));
+
+        final HandlingResult result = RequestFixture.handle(handler(file), fixture -> {});
+
+        assertThat(result.getSentFile().toString()).isEqualTo(file.toString());
+        assertThat(result.getHeaders().get("Accept-Ranges")).isEqualTo("bytes");
+    }
+
+    @Test
+    public void shouldSendByteRange() throws Exception {
+        final Path file = Files.write(Files.createTempFile("vrap", ".raml"), "#%RAML 1.0".getBytes(Charsets.UTF_8));
+
+        final HandlingResult result = RequestFixture.handle(handler(file),
+                fixture -> fixture.header("Range", "bytes=2-5"));
+
+        assertThat(result.getStatus().getCode()).isEqualTo(206);
+        assertThat(result.getBodyText()).isEqualTo("RAML");
+        assertThat(result.getHeaders().get("Content-Range")).isEqualTo("bytes 2-5/10");
+    }
+
+    private static Handler handler(final Path file) {
+        return ctx -> FileSender.send(ctx, file, "application/raml+yaml");
+    }
+}
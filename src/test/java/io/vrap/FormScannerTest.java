@@ -0,0 +1,23 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FormScannerTest {
+
+    @Test
+    public void shouldDecodeOnlyTheMatchingField() {
+        final ByteBuf body = Unpooled.copiedBuffer("grant_type=client_credentials&client_id_x=wrong&client_id=a%26b%3Dc+d&scope=&empty", Charsets.UTF_8);
+
+        assertThat(FormScanner.value(body, "client_id")).isEqualTo("a&b=c d");
+        assertThat(FormScanner.value(body, "grant_type")).isEqualTo("client_credentials");
+        assertThat(FormScanner.value(body, "scope")).isEqualTo("");
+        assertThat(FormScanner.value(body, "empty")).isEqualTo("");
+        assertThat(FormScanner.value(body, "client_secret")).isNull();
+        assertThat(body.readerIndex()).isEqualTo(0);
+    }
+}
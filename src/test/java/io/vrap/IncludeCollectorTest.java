@@ -0,0 +1,27 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class IncludeCollectorTest {
+
+    @Test
+    public void shouldCollectSharedAndCyclicIncludesOnce() throws Exception {
+        final Path dir = Files.createTempDirectory("vrap-includes").toRealPath();
+        final Path api = Files.write(dir.resolve("api.raml"), "types:\n  B: !include b.raml\n  C: !include c.raml\n".getBytes(Charsets.UTF_8));
+        final Path b = Files.write(dir.resolve("b.raml"), "properties:\n  c: !include c.raml\n".getBytes(Charsets.UTF_8));
+        final Path c = Files.write(dir.resolve("c.raml"), "properties:\n  api: !include api.raml\n".getBytes(Charsets.UTF_8));
+
+        final IncludeGraph graph = new IncludeCollector(api).collect();
+
+        assertThat(graph.getFiles()).containsExactly(api, b, c);
+        assertThat(graph.getIncluders(c)).containsExactly(api, b);
+        assertThat(graph.getCycles()).containsExactly(Arrays.asList(api, b, c, api));
+    }
+}
@@ -4,8 +4,10 @@ import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
 import org.junit.Test;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 
 import static com.google.common.io.Resources.getResource;
 import static org.assertj.core.api.Java6Assertions.assertThat;
@@ -23,4 +25,18 @@ public class IncludeResolverTest {
 
         assertThat(content).isEqualTo(expectedContent);
     }
+
+    @Test
+    public void shouldReresolveChangedIncludes() throws Exception {
+        final Path dir = Files.createTempDirectory("vrap-include");
+        final Path raml = Files.write(dir.resolve("api.raml"), "#%RAML 1.0\ntypes:\n  Foo: !include foo.raml\n".getBytes(Charsets.UTF_8));
+        final Path include = Files.write(dir.resolve("foo.raml"), "type: string\n".getBytes(Charsets.UTF_8));
+
+        assertThat(includeResolver.preprocess(raml).toString()).contains("    type: string");
+
+        Files.write(include, "type: number\n".getBytes(Charsets.UTF_8));
+        Files.setLastModifiedTime(include, FileTime.fromMillis(Files.getLastModifiedTime(include).toMillis() + 1000));
+
+        assertThat(includeResolver.preprocess(raml).toString()).contains("    type: number");
+    }
 }
@@ -0,0 +1,42 @@
+package io.vrap;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class LiteralReplacerTest {
+
+    private final LiteralReplacer replacer = new LiteralReplacer(ImmutableMap.of(
+            "https://api.example.com", "http://localhost:5050/api",
+            "https://api.example.com/oauth/token", "http://localhost:5050/auth/oauth_2_0"));
+
+    @Test
+    public void shouldReplaceLongestLiteralInSinglePass() {
+        final String content = "{\"baseUri\": \"https://api.example.com\", \"accessTokenUri\": \"https://api.example.com/oauth/token\"}";
+
+        assertThat(replacer.apply(content)).isEqualTo(
+                "{\"baseUri\": \"http://localhost:5050/api\", \"accessTokenUri\": \"http://localhost:5050/auth/oauth_2_0\"}");
+    }
+
+    @Test
+    public void shouldTreatLiteralsNotAsPatterns() {
+        assertThat(replacer.apply("https://apiXexample.com")).isEqualTo("https://apiXexample.com");
+    }
+
+    @Test
+    public void shouldReplaceAcrossWritesWhenStreaming() throws Exception {
+        final LiteralReplacer overlapping = new LiteralReplacer(ImmutableMap.of("abcd", "X", "bc", "Y", "cde", "Z"));
+        final StringWriter out = new StringWriter();
+        try (final Writer writer = overlapping.wrap(out)) {
+            for (final String chunk : new String[]{"ab", "ce ab", "cd ", "abc"}) {
+                writer.write(chunk);
+            }
+        }
+
+        assertThat(out.toString()).isEqualTo("aYe X aY");
+    }
+}
@@ -0,0 +1,36 @@
+package io.vrap;
+
+import org.junit.Test;
+import ratpack.handling.Handler;
+import ratpack.registry.Registry;
+import ratpack.test.handling.RequestFixture;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class MetricsTest {
+
+    private final Metrics metrics = new Metrics();
+
+    @Test
+    public void shouldWriteRequestCountsAndPhaseHistograms() throws Exception {
+        final Handler handler = ctx -> {
+            final Metrics.Timer timer = metrics.start(ctx, "/products/{id}", "GET", "proxy");
+            ctx.insert(Registry.single(Metrics.Timer.class, timer), ctx1 -> {
+                timer.phase(Metrics.UPSTREAM, TimeUnit.MILLISECONDS.toNanos(3));
+                ctx1.getResponse().status(201).send();
+            });
+        };
+        RequestFixture.handle(handler, fixture -> {});
+        RequestFixture.handle(handler, fixture -> {});
+
+        final String scrape = metrics.scrape();
+        assertThat(scrape)
+                .contains("vrap_requests_total{route=\"/products/{id}\",method=\"GET\",mode=\"proxy\",status=\"201\"} 2\n")
+                .contains("vrap_request_duration_seconds_count{route=\"/products/{id}\",method=\"GET\",mode=\"proxy\",status=\"201\"} 2\n")
+                .contains("vrap_phase_duration_seconds_bucket{route=\"/products/{id}\",method=\"GET\",phase=\"upstream\",le=\"0.0025\"} 0\n")
+                .contains("vrap_phase_duration_seconds_bucket{route=\"/products/{id}\",method=\"GET\",phase=\"upstream\",le=\"0.005\"} 2\n")
+                .contains("vrap_phase_duration_seconds_bucket{route=\"/products/{id}\",method=\"GET\",phase=\"upstream\",le=\"+Inf\"} 2\n");
+    }
+}
@@ -0,0 +1,74 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+import ratpack.handling.Handler;
+import ratpack.test.handling.HandlingResult;
+import ratpack.test.handling.RequestFixture;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RenderedFileCacheTest {
+
+    private final RenderedFileCache cache = new RenderedFileCache();
+    private final AtomicInteger renderings = new AtomicInteger();
+
+    @Test
+    public void shouldAnswerMatchingEtagWithNotModified() throws Exception {
+        final Path file = Files.write(Files.createTempFile("vrap", ".raml"), "#%RAML 1.0".getBytes(Charsets.UTF_8));
+
+        final HandlingResult first = RequestFixture.handle(handler(file), fixture -> {});
+        assertThat(first.getStatus().getCode()).isEqualTo(200);
+        assertThat(first.getBodyText()).isEqualTo("#%RAML 1.0");
+
+        final String etag = first.getHeaders().get("ETag");
+        final HandlingResult second = RequestFixture.handle(handler(file), fixture -> fixture.header("If-None-Match", etag));
+        assertThat(second.getStatus().getCode()).isEqualTo(304);
+        assertThat(renderings.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRenderAgainWhenFileChanges() throws Exception {
+        final Path file = Files.write(Files.createTempFile("vrap", ".raml"), "#%RAML 1.0".getBytes(Charsets.UTF_8));
+        final String etag = RequestFixture.handle(handler(file), fixture -> {}).getHeaders().get("ETag");
+
+        Files.write(file, "#%RAML 1.0 DataType".getBytes(Charsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+
+        final HandlingResult result = RequestFixture.handle(handler(file), fixture -> fixture.header("If-None-Match", etag));
+        assertThat(result.getStatus().getCode()).isEqualTo(200);
+        assertThat(result.getBodyText()).isEqualTo("#%RAML 1.0 DataType");
+        assertThat(renderings.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSendGzipVariantWhenAccepted() throws Exception {
+        final Path file = Files.write(Files.createTempFile("vrap", ".raml"), "#%RAML 1.0".getBytes(Charsets.UTF_8));
+
+        final HandlingResult result = RequestFixture.handle(handler(file), fixture -> fixture.header("Accept-Encoding", "deflate, gzip;q=0.8"));
+
+        assertThat(result.getHeaders().get("Content-Encoding")).isEqualTo("gzip");
+        assertThat(result.getHeaders().get("Vary")).contains("Accept-Encoding");
+        try (final GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result.getBodyBytes()))) {
+            assertThat(new String(ByteStreams.toByteArray(gzip), Charsets.UTF_8)).isEqualTo("#%RAML 1.0");
+        }
+    }
+
+    private Handler handler(final Path file) {
+        return ctx -> cache.send(ctx, Arrays.asList(file, false, "application/raml+yaml"),
+                ImmutableMap.of(file, FileStamp.of(file)), "application/raml+yaml", out -> {
+                    renderings.incrementAndGet();
+                    out.write(new String(Files.readAllBytes(file), Charsets.UTF_8));
+                });
+    }
+}
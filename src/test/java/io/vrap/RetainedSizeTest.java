@@ -0,0 +1,44 @@
+package io.vrap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RetainedSizeTest {
+
+    @Test
+    public void shouldCountLargerGraphsLarger() {
+        final List<String> small = new ArrayList<>();
+        small.add("a");
+        final List<String> large = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            large.add("element" + i);
+        }
+
+        assertThat(new RetainedSize().estimate(large)).isGreaterThan(new RetainedSize().estimate(small));
+    }
+
+    @Test
+    public void shouldNotCountSharedObjectsTwice() {
+        final Node shared = new Node(null, "shared content");
+        final RetainedSize retainedSize = new RetainedSize();
+
+        final long first = retainedSize.estimate(new Node(shared, "first"));
+        final long second = retainedSize.estimate(new Node(shared, "second"));
+
+        assertThat(second).isLessThan(first);
+    }
+
+    private static class Node {
+        private final Node child;
+        private final String value;
+
+        Node(final Node child, final String value) {
+            this.child = child;
+            this.value = value;
+        }
+    }
+}
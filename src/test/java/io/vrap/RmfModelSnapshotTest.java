@@ -0,0 +1,108 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import io.vrap.rmf.raml.model.RamlModelBuilder;
+import io.vrap.rmf.raml.model.modules.Api;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RmfModelSnapshotTest {
+    private Path dir;
+    private Path api;
+    private Path include;
+    private Path snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("vrap-snapshot").toRealPath();
+        api = Files.write(dir.resolve("api.raml"), ("#%RAML 1.0\n" +
+                "title: Test\n" +
+                "types:\n" +
+                "  Product: !include product.raml\n" +
+                "/products:\n" +
+                "  get:\n" +
+                "    responses:\n" +
+                "      200:\n" +
+                "        body:\n" +
+                "          application/json:\n" +
+                "            type: Product\n").getBytes(Charsets.UTF_8));
+        include = Files.write(dir.resolve("product.raml"), ("#%RAML 1.0 DataType\n" +
+                "type: object\n" +
+                "properties:\n" +
+                "  id: string\n").getBytes(Charsets.UTF_8));
+        snapshotFile = dir.resolve("api.snapshot");
+    }
+
+    @Test
+    public void shouldLoadSavedSnapshotEqualToParsedModel() {
+        final Api parsed = new RamlModelBuilder().buildApi(URI.createURI(api.toUri().toString())).getRootObject();
+        new RmfModelSnapshot(snapshotFile, api, Collections.singleton(include)).save(parsed);
+
+        final Optional<Api> loaded = new RmfModelSnapshot(snapshotFile, api, Collections.singleton(include)).load();
+
+        assertThat(loaded.isPresent()).isTrue();
+        assertThat(EcoreUtil.equals(parsed, loaded.get())).isTrue();
+    }
+
+    @Test
+    public void shouldChangeKeyWithIncludeOrFormatVersion() throws Exception {
+        final String key = new RmfModelSnapshot(snapshotFile, api, Collections.singleton(include)).getKey();
+        assertThat(RmfModelSnapshot.key(RmfModelSnapshot.getFormatVersion(), api, Collections.singleton(include))).isEqualTo(key);
+        assertThat(RmfModelSnapshot.key(RmfModelSnapshot.getFormatVersion() + 1, api, Collections.singleton(include))).isNotEqualTo(key);
+
+        Files.write(include, "#%RAML 1.0 DataType\ntype: string\n".getBytes(Charsets.UTF_8));
+
+        assertThat(new RmfModelSnapshot(snapshotFile, api, Collections.singleton(include)).getKey()).isNotEqualTo(key);
+    }
+
+    @Test
+    public void shouldIgnoreCorruptSnapshot() throws Exception {
+        Files.write(snapshotFile, "not a snapshot".getBytes(Charsets.UTF_8));
+
+        assertThat(new RmfModelSnapshot(snapshotFile, api, Collections.singleton(include)).load().isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldIgnoreTruncatedSnapshot() throws Exception {
+        final RmfModelSnapshot snapshot = new RmfModelSnapshot(snapshotFile, api, Collections.singleton(include));
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(snapshotFile)))) {
+            out.writeInt(RmfModelSnapshot.getFormatVersion());
+            out.writeUTF(snapshot.getKey());
+            out.writeInt(1);
+        }
+
+        assertThat(snapshot.load().isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldSkipSnapshotWhenIncludeIsMissing() throws Exception {
+        Files.write(snapshotFile, "not a snapshot".getBytes(Charsets.UTF_8));
+        final RmfModelSnapshot snapshot = new RmfModelSnapshot(snapshotFile, api, Collections.singleton(dir.resolve("missing.raml")));
+
+        assertThat(snapshot.getKey()).isNull();
+        assertThat(snapshot.load().isPresent()).isFalse();
+        snapshot.save(null);
+        assertThat(new String(Files.readAllBytes(snapshotFile), Charsets.UTF_8)).isEqualTo("not a snapshot");
+    }
+
+    @Test
+    public void shouldParseWhenSnapshotIsCorrupt() throws Exception {
+        Files.write(snapshotFile, new byte[]{0x1f, (byte) 0x8b, 0x08});
+
+        final RmfModelRepository repository = RmfModelRepository.of(api, new RmfModelSnapshot(snapshotFile, api, Collections.singleton(include)));
+
+        assertThat(repository.getApi()).isNotNull();
+        assertThat(repository.getApi().getTitle()).isEqualTo("Test");
+    }
+}
@@ -0,0 +1,37 @@
+package io.vrap;
+
+import org.junit.Test;
+import ratpack.handling.Handler;
+import ratpack.handling.Handlers;
+import ratpack.test.handling.HandlingResult;
+import ratpack.test.handling.RequestFixture;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ServerTimingTest {
+
+    @Test
+    public void shouldAddLatencyBreakdownHeaders() throws Exception {
+        final HandlingResult result = RequestFixture.handle(Handlers.chain(ServerTiming::start, ctx -> {
+            ServerTiming.routeMatched(ctx);
+            Metrics.phase(ctx, Metrics.REQUEST_VALIDATION, System.nanoTime());
+            ctx.getResponse().send();
+        }), fixture -> {});
+
+        assertThat(result.getHeaders().get("Server-Timing"))
+                .matches("route;dur=\\d+\\.\\d{3}, request_validation;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}");
+        assertThat(result.getHeaders().get("X-Vrap-Timing"))
+                .matches("route=\\d+\\.\\d{3}ms, request_validation=\\d+\\.\\d{3}ms, total=\\d+\\.\\d{3}ms");
+    }
+
+    @Test
+    public void shouldNotAddHeadersIfNotStarted() throws Exception {
+        final Handler handler = ctx -> {
+            ServerTiming.routeMatched(ctx);
+            ctx.getResponse().send();
+        };
+        final HandlingResult result = RequestFixture.handle(handler, fixture -> {});
+
+        assertThat(result.getHeaders().contains("Server-Timing")).isFalse();
+    }
+}
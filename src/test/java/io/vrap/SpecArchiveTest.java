@@ -0,0 +1,47 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+import ratpack.http.client.ReceivedResponse;
+import ratpack.test.embed.EmbeddedApp;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class SpecArchiveTest {
+
+    @Test
+    public void shouldArchiveRamlFileAndIncludes() throws Exception {
+        final Path dir = Files.createTempDirectory("vrap-archive");
+        final Path api = Files.write(dir.resolve("api.raml"), "types:\n  Foo: !include types/foo.raml\n".getBytes(Charsets.UTF_8));
+        final Path foo = Files.write(Files.createDirectory(dir.resolve("types")).resolve("foo.raml"), "type: string\n".getBytes(Charsets.UTF_8));
+        final SpecArchive archive = new SpecArchive(api, Arrays.asList(api, foo));
+
+        EmbeddedApp.fromHandler(ctx -> archive.send(ctx, VrapApp.API_URI)).test(client -> {
+            final ReceivedResponse streamed = client.get();
+            assertThat(streamed.getHeaders().get("Content-Disposition")).isEqualTo("attachment; filename=\"api.zip\"");
+            assertThat(entries(streamed.getBody().getBytes())).containsExactly("api.raml", "types/foo.raml");
+
+            final ReceivedResponse cached = client.get();
+            assertThat(cached.getBody().getBytes()).isEqualTo(streamed.getBody().getBytes());
+        });
+    }
+
+    private static List<String> entries(final byte[] archive) throws Exception {
+        final List<String> entries = new ArrayList<>();
+        try (final ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,76 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class SpecReloaderTest {
+    private Path api;
+
+    @Before
+    public void setUp() throws Exception {
+        api = Files.createTempDirectory("vrap-reload").toRealPath().resolve("api.raml");
+    }
+
+    @Test
+    public void shouldReloadSpecWithExistingDiagnostics() throws Exception {
+        final SpecReloader reloader = reloader(VrapApp.PARSER_RMF, spec("Test", 1));
+        final ApiModels loaded = reloader.get();
+        assertThat(loaded.getRmfRepo().getErrorCount()).isGreaterThan(0);
+
+        write(spec("Reloaded", 1));
+
+        assertThat(reloader.reload()).isTrue();
+        assertThat(reloader.get()).isNotSameAs(loaded);
+        assertThat(reloader.get().getRmfRepo().getApi().getTitle()).isEqualTo("Reloaded");
+    }
+
+    @Test
+    public void shouldKeepModelWhenErrorsIncrease() throws Exception {
+        final SpecReloader reloader = reloader(VrapApp.PARSER_RMF, spec("Test", 1));
+        final ApiModels loaded = reloader.get();
+
+        write(spec("Reloaded", 2));
+
+        assertThat(reloader.reload()).isFalse();
+        assertThat(reloader.get()).isSameAs(loaded);
+    }
+
+    @Test
+    public void shouldKeepModelWhenParserProducesNoApi() throws Exception {
+        final SpecReloader reloader = reloader(VrapApp.PARSER_RAML, "#%RAML 1.0\ntitle: Test\nbaseUri: https://api.example.com\n");
+        final ApiModels loaded = reloader.get();
+
+        write("#%RAML 1.0\ntitle: [Test\nbaseUri: https://api.example.com\n");
+
+        assertThat(reloader.reload()).isFalse();
+        assertThat(reloader.get()).isSameAs(loaded);
+    }
+
+    private SpecReloader reloader(final String parser, final String spec) throws Exception {
+        write(spec);
+        final VrapApp.VrapOptions options = new VrapApp.VrapOptions(new String[]{"--parsers", parser, api.toString()});
+        final IncludeGraph includes = new IncludeCollector(api).collect();
+        return new SpecReloader(options, api, ApiModels.load(options, api, includes.getFiles()), includes);
+    }
+
+    private void write(final String spec) throws Exception {
+        Files.write(api, spec.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Returns a spec with the given number of examples which don't match their type.
+     */
+    private static String spec(final String title, final int invalidExamples) {
+        final StringBuilder spec = new StringBuilder("#%RAML 1.0\ntitle: ").append(title).append("\nbaseUri: https://api.example.com\ntypes:\n");
+        for (int i = 0; i < invalidExamples; i++) {
+            spec.append("  Count").append(i).append(":\n    type: integer\n    example: not a number\n");
+        }
+        return spec.toString();
+    }
+}
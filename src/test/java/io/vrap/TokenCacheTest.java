@@ -0,0 +1,109 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+import ratpack.exec.ExecResult;
+import ratpack.exec.Promise;
+import ratpack.func.Pair;
+import ratpack.test.exec.ExecHarness;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TokenCacheTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final TokenCache cache = new TokenCache(clock);
+    private final TokenCache.Key key = new TokenCache.Key("https://auth.example.com/oauth/token", "client", "secret-hash", "client_credentials", "");
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    @Test
+    public void shouldServeTokenWithRemainingLifetimeUntilShortlyBeforeExpiry() throws Exception {
+        assertThat(body(get(200))).isEqualTo("{\"access_token\":\"token-1\",\"expires_in\":600}");
+
+        clock.now = clock.now.plusSeconds(100);
+        assertThat(body(get(200))).isEqualTo("{\"access_token\":\"token-1\",\"expires_in\":500}");
+        assertThat(fetches.get()).isEqualTo(1);
+
+        clock.now = clock.now.plusSeconds(450);
+        assertThat(body(get(200))).isEqualTo("{\"access_token\":\"token-2\",\"expires_in\":600}");
+        assertThat(fetches.get()).isEqualTo(2);
+        assertThat(cache.getStats()).containsEntry("hits", 1L).containsEntry("misses", 2L);
+    }
+
+    @Test
+    public void shouldNotCacheErrors() throws Exception {
+        assertThat(get(401).getStatus()).isEqualTo(401);
+        assertThat(get(401).getStatus()).isEqualTo(401);
+
+        assertThat(fetches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentMissesIntoOneFetch() throws Exception {
+        final Pair<TokenCache.TokenResponse, TokenCache.TokenResponse> responses = ExecHarness.yieldSingle(execution -> {
+            final Promise<TokenCache.TokenResponse> first = cache.get(key, () -> fetch(200));
+            final Promise<TokenCache.TokenResponse> second = cache.get(key, () -> fetch(200));
+            return first.right(second);
+        }).getValueOrThrow();
+
+        assertThat(body(responses.getLeft())).isEqualTo("{\"access_token\":\"token-1\",\"expires_in\":600}");
+        assertThat(body(responses.getRight())).isEqualTo("{\"access_token\":\"token-1\",\"expires_in\":600}");
+        assertThat(fetches.get()).isEqualTo(1);
+        assertThat(cache.getStats()).containsEntry("misses", 1L).containsEntry("coalesced", 1L);
+    }
+
+    @Test(timeout = 10000)
+    public void shouldFetchAgainWhenFetchFailsSynchronously() throws Exception {
+        final ExecResult<TokenCache.TokenResponse> failed = ExecHarness.yieldSingle(execution -> cache.get(key, () -> {
+            throw new IllegalStateException("no http client");
+        }));
+        assertThat(failed.getThrowable()).isInstanceOf(IllegalStateException.class);
+
+        assertThat(body(get(200))).isEqualTo("{\"access_token\":\"token-1\",\"expires_in\":600}");
+        assertThat(cache.getStats()).containsEntry("misses", 2L).containsEntry("coalesced", 0L);
+    }
+
+    private TokenCache.TokenResponse get(final int status) throws Exception {
+        return ExecHarness.yieldSingle(execution -> cache.get(key, () -> fetch(status))).getValueOrThrow();
+    }
+
+    /**
+     * Returns a fetch which counts the requests to the token uri when it is executed.
+     */
+    private Promise<TokenCache.TokenResponse> fetch(final int status) {
+        return Promise.sync(() -> {
+            final int fetch = fetches.incrementAndGet();
+            final String body = "{\"access_token\":\"token-" + fetch + "\",\"expires_in\":600}";
+            return new TokenCache.TokenResponse(status, "application/json", body.getBytes(Charsets.UTF_8));
+        });
+    }
+
+    private static String body(final TokenCache.TokenResponse response) {
+        return new String(response.getBody(), Charsets.UTF_8);
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2018-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import ratpack.form.Form;
+import ratpack.handling.Handler;
+import ratpack.test.handling.HandlingResult;
+import ratpack.test.handling.RequestFixture;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TokenIssuerTest {
+
+    @Test
+    public void shouldValidateIssuedTokensUntilTheyExpire() throws Exception {
+        final Instant now = Instant.parse("2018-01-01T00:00:00Z");
+        final TokenIssuer issuer = new TokenIssuer(Duration.ofSeconds(60), ImmutableSet.of(), ImmutableMap.of(), Clock.fixed(now, ZoneOffset.UTC));
+        final String token = issuer.issue("", "oauth_2_0", ImmutableSet.of("view_products"));
+
+        assertThat(issuer.validate("Bearer " + token, "").get().getScopes()).containsExactly("view_products");
+        assertThat(issuer.validate("Bearer unknown", "").isPresent()).isFalse();
+        assertThat(issuer.validate(null, "").isPresent()).isFalse();
+
+        final TokenIssuer expiring = new TokenIssuer(Duration.ZERO, ImmutableSet.of(), ImmutableMap.of(), Clock.fixed(now, ZoneOffset.UTC));
+        assertThat(expiring.validate("Bearer " + expiring.issue("", "oauth_2_0", ImmutableSet.of()), "").isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldRejectRequestsWithoutIssuedToken() throws Exception {
+        final TokenIssuer issuer = new TokenIssuer(Duration.ofSeconds(60), ImmutableSet.of(), ImmutableMap.of());
+        final String token = issuer.issue("", "oauth_2_0", ImmutableSet.of());
+
+        final HandlingResult rejected = RequestFixture.handle(new TokenIssuer.AccessTokenHandler(), fixture -> fixture
+                .registry(r -> r.add(issuer).add(options())));
+        assertThat(rejected.getStatus().getCode()).isEqualTo(401);
+        assertThat(rejected.getHeaders().get("WWW-Authenticate")).isEqualTo("Bearer error=\"invalid_token\"");
+
+        final HandlingResult accepted = RequestFixture.handle(new TokenIssuer.AccessTokenHandler(), fixture -> fixture
+                .registry(r -> r.add(issuer).add(options()))
+                .header("Authorization", "Bearer " + token));
+        assertThat(accepted.isCalledNext()).isTrue();
+    }
+
+    @Test
+    public void shouldRejectTokensIssuedForAnotherMount() throws Exception {
+        final TokenIssuer issuer = new TokenIssuer(Duration.ofSeconds(60), ImmutableSet.of(), ImmutableMap.of());
+        final String token = issuer.issue("orders/", "oauth_2_0", ImmutableSet.of());
+
+        final HandlingResult rejected = RequestFixture.handle(new TokenIssuer.AccessTokenHandler(), fixture -> fixture
+                .registry(r -> r.add(issuer).add(options("--mount", "carts")))
+                .header("Authorization", "Bearer " + token));
+        assertThat(rejected.getStatus().getCode()).isEqualTo(401);
+
+        final HandlingResult accepted = RequestFixture.handle(new TokenIssuer.AccessTokenHandler(), fixture -> fixture
+                .registry(r -> r.add(issuer).add(options("--mount", "orders")))
+                .header("Authorization", "Bearer " + token));
+        assertThat(accepted.isCalledNext()).isTrue();
+    }
+
+    @Test
+    public void shouldOnlyIssueTokensToConfiguredClients() throws Exception {
+        final TokenIssuer issuer = new TokenIssuer(Duration.ofSeconds(60), ImmutableSet.of(), ImmutableMap.of("client", "secret"));
+        final String basic = "Basic " + Base64.getEncoder().encodeToString("client:secret".getBytes(Charsets.UTF_8));
+
+        assertThat(requestToken(issuer, "grant_type=client_credentials&client_id=client&client_secret=secret", null).getStatus().getCode()).isEqualTo(200);
+        assertThat(requestToken(issuer, "grant_type=client_credentials", basic).getStatus().getCode()).isEqualTo(200);
+        assertThat(requestToken(issuer, "grant_type=client_credentials&client_id=client&client_secret=wrong", null).getStatus().getCode()).isEqualTo(401);
+        assertThat(requestToken(issuer, "grant_type=client_credentials", null).getStatus().getCode()).isEqualTo(401);
+    }
+
+    private static HandlingResult requestToken(final TokenIssuer issuer, final String form, final String authorization) throws Exception {
+        final Handler handler = ctx -> ctx.parse(Form.class).then(parsed -> issuer.issue(ctx, parsed, "oauth_2_0", Collections.emptyList()));
+        return RequestFixture.handle(handler, fixture -> {
+            fixture.method("POST").body(form, "application/x-www-form-urlencoded").registry(r -> r.add(options()));
+            if (authorization != null) {
+                fixture.header("Authorization", authorization);
+            }
+        });
+    }
+
+    private static VrapApp.VrapOptions options(final String... args) {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        arguments.add("api.raml");
+        return VrapApp.VrapOptions.parseAll(arguments.toArray(new String[0])).get(0);
+    }
+}
@@ -0,0 +1,75 @@
+package io.vrap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import ratpack.handling.Handler;
+import ratpack.handling.Handlers;
+import ratpack.test.handling.HandlingResult;
+import ratpack.test.handling.RequestFixture;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TracingTest {
+
+    @Test
+    public void shouldParseTraceParent() {
+        final Tracing.TraceParent parent = Tracing.TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        assertThat(parent).isNotNull();
+        assertThat(parent.getTraceId()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(parent.getSpanId()).isEqualTo("00f067aa0ba902b7");
+        assertThat(parent.isSampled()).isTrue();
+        assertThat(Tracing.TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00").isSampled()).isFalse();
+    }
+
+    @Test
+    public void shouldRejectInvalidTraceParent() {
+        assertThat(Tracing.TraceParent.parse(null)).isNull();
+        assertThat(Tracing.TraceParent.parse("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01")).isNull();
+        assertThat(Tracing.TraceParent.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01")).isNull();
+        assertThat(Tracing.TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra")).isNull();
+        assertThat(Tracing.TraceParent.parse("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01")).isNull();
+    }
+
+    @Test
+    public void shouldPropagateUnsampledTraceParentWhenRequestHasNone() throws Exception {
+        final Tracing tracing = new Tracing(0.0, null, null);
+        final Handler handler = ctx -> {
+            Tracing.propagate(ctx, ctx.getResponse().getHeaders());
+            ctx.getResponse().send();
+        };
+        final HandlingResult result = RequestFixture.handle(Handlers.chain(tracing, handler), fixture -> {});
+        tracing.onStop(null);
+
+        final Tracing.TraceParent parent = Tracing.TraceParent.parse(result.getHeaders().get(Tracing.TRACEPARENT));
+        assertThat(parent).isNotNull();
+        assertThat(parent.isSampled()).isFalse();
+    }
+
+    @Test
+    public void shouldExportSpansOfATraceAsOtlpJson() throws Exception {
+        final Path file = Files.createTempFile("vrap", ".otlp.ndjson");
+        final Tracing tracing = new Tracing(1.0, file, null);
+        final Tracing.Trace trace = new Tracing.Trace(tracing, "4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7");
+
+        trace.phase(Metrics.REQUEST_VALIDATION, System.nanoTime(), 1000);
+        trace.phase(Metrics.UPSTREAM, System.nanoTime(), 2000);
+        tracing.onStop(null);
+
+        final List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(1);
+        final JsonNode scopeSpans = new ObjectMapper().readTree(lines.get(0)).get("resourceSpans").get(0).get("scopeSpans").get(0);
+        final JsonNode spans = scopeSpans.get("spans");
+        assertThat(spans.size()).isEqualTo(2);
+        assertThat(spans.get(0).get("traceId").asText()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(spans.get(0).get("name").asText()).isEqualTo(Metrics.REQUEST_VALIDATION);
+        assertThat(spans.get(1).get("kind").asInt()).isEqualTo(3);
+        assertThat(spans.get(1).get("parentSpanId").asText()).isEqualTo(spans.get(0).get("parentSpanId").asText());
+        assertThat(Long.parseLong(spans.get(1).get("endTimeUnixNano").asText()) - Long.parseLong(spans.get(1).get("startTimeUnixNano").asText()))
+                .isEqualTo(2000);
+    }
+}
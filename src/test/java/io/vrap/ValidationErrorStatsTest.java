@@ -0,0 +1,71 @@
+package io.vrap;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ValidationErrorStatsTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final ValidationErrorStats stats = new ValidationErrorStats(Duration.ofMinutes(15), 2, 3, clock);
+
+    @Test
+    public void shouldCountNormalizedErrorsInTheWindow() {
+        stats.record("/products", "request", "body", "request", "Expected max length 10 but got 12");
+        stats.record("/products", "request", "body", "request", "Expected max length 10 but got 15");
+        stats.record("/carts", "response", "body", "response", "Invalid value \"foo\"");
+
+        assertThat(top().get(0)).containsEntry("route", "/products")
+                .containsEntry("message", "Expected max length <number> but got <number>")
+                .containsEntry("count", 2L)
+                .containsEntry("lastMessage", "Expected max length 10 but got 15");
+        assertThat(top().get(1)).containsEntry("message", "Invalid value <string>").containsEntry("count", 1L);
+
+        clock.now = clock.now.plus(Duration.ofMinutes(16));
+        assertThat(top()).isEmpty();
+    }
+
+    @Test
+    public void shouldDropErrorsBeyondTheBound() {
+        stats.record("/a", "request", "header", "X-A", "missing");
+        stats.record("/b", "request", "header", "X-B", "missing");
+        stats.record("/c", "request", "header", "X-C", "missing");
+        stats.record("/d", "request", "header", "X-D", "missing");
+
+        final Map<String, Object> report = stats.report(10);
+        assertThat(report).containsEntry("distinctErrors", 2).containsEntry("dropped", 2L);
+        assertThat((List<?>) report.get("samples")).hasSize(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> top() {
+        return (List<Map<String, Object>>) stats.report(10).get("top");
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2018-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
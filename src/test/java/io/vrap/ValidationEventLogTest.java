@@ -0,0 +1,41 @@
+package io.vrap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ValidationEventLogTest {
+
+    @Test
+    public void shouldWriteOneTruncatedRecordPerEvent() throws Exception {
+        final Path file = Files.createTempFile("vrap", ".ndjson");
+        final ValidationEventLog log = new ValidationEventLog(file, 5, 1024 * 1024);
+        final List<Validator.ValidationError> errors = ImmutableList.of(
+                new Validator.ValidationError(Validator.ValidationKind.body, "response", "Invalid type"));
+
+        log.offer(new ValidationEventLog.Event(Instant.parse("2018-01-01T00:00:00Z"), "/products/{id}", "GET", "/api/products/1",
+                ValidationErrorStats.RESPONSE, 200, errors, "{\"id\":\"1\"}".getBytes(Charsets.UTF_8), null));
+        log.offer(new ValidationEventLog.Event(Instant.parse("2018-01-01T00:00:01Z"), "/products", "POST", "/api/products",
+                ValidationErrorStats.REQUEST, null, errors, new byte[0], null));
+        log.onStop(null);
+
+        final List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        final JsonNode record = new ObjectMapper().readTree(lines.get(0));
+        assertThat(record.get("route").asText()).isEqualTo("/products/{id}");
+        assertThat(record.get("status").asInt()).isEqualTo(200);
+        assertThat(record.get("errors").get(0).get("message").asText()).isEqualTo("Invalid type");
+        assertThat(record.get("body").get("length").asInt()).isEqualTo(10);
+        assertThat(record.get("body").get("excerpt").asText()).isEqualTo("{\"id\"");
+        assertThat(new ObjectMapper().readTree(lines.get(1)).has("body")).isFalse();
+    }
+}
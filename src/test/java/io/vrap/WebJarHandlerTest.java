@@ -0,0 +1,126 @@
+package io.vrap;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ratpack.test.handling.HandlingResult;
+import ratpack.test.handling.RequestFixture;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class WebJarHandlerTest {
+    private static final String WEBJAR_PATH = "META-INF/resources/webjars/test-ui/1.0.0/dist/";
+    private static final String SCRIPT = Strings.repeat("console.log('vrap');\n", 100);
+    private static final String STYLE = "body { margin: 0; }";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldAnswerMatchingEtagWithNotModified() throws Exception {
+        final WebJarHandler handler = handler(explodedClassLoader());
+        final HandlingResult first = get(handler, "app.js");
+        assertThat(first.getStatus().getCode()).isEqualTo(200);
+        assertThat(first.getBodyText()).isEqualTo(SCRIPT);
+
+        final HandlingResult second = get(handler, "app.js", "If-None-Match", first.getHeaders().get("ETag"));
+        assertThat(second.getStatus().getCode()).isEqualTo(304);
+    }
+
+    @Test
+    public void shouldSendGzipVariantWhenAccepted() throws Exception {
+        final HandlingResult plain = get(handler(explodedClassLoader()), "app.js");
+        final HandlingResult result = get(handler(explodedClassLoader()), "app.js", "Accept-Encoding", "gzip");
+
+        assertThat(result.getHeaders().get("Content-Encoding")).isEqualTo("gzip");
+        assertThat(result.getHeaders().get("Vary")).contains("Accept-Encoding");
+        assertThat(result.getHeaders().get("ETag")).isNotEqualTo(plain.getHeaders().get("ETag"));
+        try (final GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result.getBodyBytes()))) {
+            assertThat(new String(ByteStreams.toByteArray(gzip), Charsets.UTF_8)).isEqualTo(SCRIPT);
+        }
+    }
+
+    @Test
+    public void shouldSendImmutableCacheHeader() throws Exception {
+        final HandlingResult result = get(handler(explodedClassLoader()), "app.js");
+
+        assertThat(result.getHeaders().get("Cache-Control")).isEqualTo("public, max-age=31536000, immutable");
+        assertThat(result.getHeaders().get("Last-Modified")).isNotNull();
+    }
+
+    @Test
+    public void shouldPassUnknownAssetsToNextHandler() throws Exception {
+        final HandlingResult result = get(handler(explodedClassLoader()), "missing.js");
+
+        assertThat(result.isCalledNext()).isTrue();
+    }
+
+    @Test
+    public void shouldServeSameAssetsFromJarAndExplodedClasspath() throws Exception {
+        final WebJarHandler exploded = handler(explodedClassLoader());
+        final WebJarHandler jar = handler(jarClassLoader());
+
+        for (final String path : new String[]{"app.js", "css/app.css"}) {
+            final HandlingResult fromExploded = get(exploded, path);
+            final HandlingResult fromJar = get(jar, path);
+
+            assertThat(fromJar.getStatus().getCode()).isEqualTo(200);
+            assertThat(fromJar.getBodyText()).isEqualTo(fromExploded.getBodyText());
+            assertThat(fromJar.getHeaders().get("ETag")).isEqualTo(fromExploded.getHeaders().get("ETag"));
+            assertThat(fromJar.getHeaders().get("Content-Type")).isEqualTo(fromExploded.getHeaders().get("Content-Type"));
+            assertThat(fromJar.getHeaders().get("Cache-Control")).isEqualTo(fromExploded.getHeaders().get("Cache-Control"));
+        }
+    }
+
+    private static WebJarHandler handler(final ClassLoader classLoader) {
+        return new WebJarHandler("test-ui", "1.0.0", "dist", classLoader);
+    }
+
+    private static HandlingResult get(final WebJarHandler handler, final String path) throws Exception {
+        return RequestFixture.handle(handler, fixture -> fixture.pathBinding("", path, Collections.emptyMap()));
+    }
+
+    private static HandlingResult get(final WebJarHandler handler, final String path, final String headerName, final String headerValue) throws Exception {
+        return RequestFixture.handle(handler, fixture -> fixture.pathBinding("", path, Collections.emptyMap()).header(headerName, headerValue));
+    }
+
+    private ClassLoader explodedClassLoader() throws Exception {
+        final File root = folder.newFolder();
+        final Path dist = root.toPath().resolve(WEBJAR_PATH);
+        Files.createDirectories(dist.resolve("css"));
+        Files.write(dist.resolve("app.js"), SCRIPT.getBytes(Charsets.UTF_8));
+        Files.write(dist.resolve("css/app.css"), STYLE.getBytes(Charsets.UTF_8));
+        return new URLClassLoader(new URL[]{root.toURI().toURL()}, null);
+    }
+
+    private ClassLoader jarClassLoader() throws Exception {
+        final File jar = folder.newFile("test-ui.jar");
+        try (final ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            putEntry(zip, WEBJAR_PATH, "");
+            putEntry(zip, WEBJAR_PATH + "css/", "");
+            putEntry(zip, WEBJAR_PATH + "app.js", SCRIPT);
+            putEntry(zip, WEBJAR_PATH + "css/app.css", STYLE);
+        }
+        return new URLClassLoader(new URL[]{jar.toURI().toURL()}, null);
+    }
+
+    private static void putEntry(final ZipOutputStream zip, final String name, final String content) throws Exception {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(Charsets.UTF_8));
+        zip.closeEntry();
+    }
+}